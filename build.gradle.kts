@@ -50,6 +50,16 @@ dependencies {
 
     library(kotlin("stdlib"))
     library(kotlin("reflect"))
+
+    testImplementation(platform("org.junit:junit-bom:5.11.4"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testImplementation("org.mockito:mockito-core:5.14.2")
+    testImplementation("org.spigotmc:spigot-api:1.21.11-R0.1-SNAPSHOT")
+    testImplementation("com.github.retrooper:packetevents-spigot:2.10.0")
+    testImplementation("io.netty:netty-all:4.1.115.Final")
+    testCompileOnly("org.projectlombok:lombok:1.18.36")
+    testAnnotationProcessor("org.projectlombok:lombok:1.18.36")
 }
 
 kotlin {
@@ -64,6 +74,22 @@ tasks.build {
     dependsOn(tasks.shadowJar)
 }
 
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("benchmark")
+    }
+}
+
+val benchmark by tasks.registering(Test::class) {
+    description = "Runs the microbenchmarks"
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+}
+
 val pluginPackage = "com.maximde.hologramlib"
 tasks.shadowJar {
 
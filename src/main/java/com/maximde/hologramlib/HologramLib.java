@@ -7,14 +7,18 @@ import com.github.retrooper.packetevents.manager.player.PlayerManager;
 import com.maximde.hologramlib.bstats.Metrics;
 import com.maximde.hologramlib.hologram.HologramManager;
 import com.maximde.hologramlib.hologram.PassengerManager;
+import com.maximde.hologramlib.hologram.PlayerIndex;
 import com.maximde.hologramlib.hook.BedrockPlayerHeadFilter;
 import com.maximde.hologramlib.hook.HeadDatabaseHook;
 import com.maximde.hologramlib.hook.PlaceholderAPIHook;
 import com.maximde.hologramlib.listener.InteractionPacketListener;
+import com.maximde.hologramlib.listener.LodMetadataListener;
 import com.maximde.hologramlib.listener.PlayerJoinListener;
+import com.maximde.hologramlib.listener.PlayerMoveListener;
 import com.maximde.hologramlib.listener.PlayerQuitListener;
 import com.maximde.hologramlib.utils.BukkitTasks;
 import com.maximde.hologramlib.utils.ItemsAdderHolder;
+import com.maximde.hologramlib.utils.PacketQueue;
 import com.maximde.hologramlib.utils.PlayerUtils;
 import com.maximde.hologramlib.utils.ReplaceText;
 import com.maximjsx.addonlib.core.AddonLib;
@@ -125,11 +129,16 @@ public abstract class HologramLib {
             BukkitTasks.setFoliaLib(foliaLib);
 
             hologramManager = new HologramManager();
+            PlayerIndex.addOnlinePlayers();
+            PacketQueue.start();
             PacketEvents.getAPI().getEventManager().registerListener(new InteractionPacketListener(hologramManager),
                     PacketListenerPriority.LOW);
+            PacketEvents.getAPI().getEventManager().registerListener(new LodMetadataListener(hologramManager),
+                    PacketListenerPriority.HIGH);
 
             plugin.getServer().getPluginManager().registerEvents(new PlayerJoinListener(hologramManager), plugin);
             plugin.getServer().getPluginManager().registerEvents(new PlayerQuitListener(hologramManager), plugin);
+            plugin.getServer().getPluginManager().registerEvents(new PlayerMoveListener(hologramManager), plugin);
 
 
             PluginManager pluginManager = Bukkit.getPluginManager();
@@ -170,6 +179,11 @@ public abstract class HologramLib {
         try {
             hologramManager.removeAll();
             hologramManager.removeAllInteractionBoxes();
+            hologramManager.getVisibilityEngine().shutdown();
+            hologramManager.getTransformAnimator().shutdown();
+            hologramManager.getPlaceholderRefresher().shutdown();
+            PacketQueue.shutdown();
+            PlayerIndex.clear();
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -4,10 +4,7 @@ import com.github.retrooper.packetevents.protocol.entity.type.EntityType;
 import com.github.retrooper.packetevents.protocol.entity.type.EntityTypes;
 import com.github.retrooper.packetevents.util.Quaternion4f;
 import lombok.Getter;
-import lombok.Setter;
-import lombok.experimental.Accessors;
 import me.tofaa.entitylib.meta.EntityMeta;
-import me.tofaa.entitylib.meta.display.AbstractDisplayMeta;
 import me.tofaa.entitylib.meta.display.BlockDisplayMeta;
 import org.joml.Vector3f;
 
@@ -18,12 +15,8 @@ import java.util.concurrent.ThreadLocalRandom;
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public class BlockHologram extends Hologram<BlockHologram> {
 
-    @Setter
-    @Accessors(chain = true)
     protected int block = 0;
 
-    @Setter
-    @Accessors(chain = true)
     protected boolean onFire = false;
 
     public BlockHologram(String id) {
@@ -41,24 +34,24 @@ public class BlockHologram extends Hologram<BlockHologram> {
     @Override
     protected EntityMeta applyMeta() {
         BlockDisplayMeta meta = (BlockDisplayMeta) this.entity.getEntityMeta();
-        meta.setInterpolationDelay(-1);
-        meta.setTransformationInterpolationDuration(this.interpolationDurationTransformation);
-        meta.setPositionRotationInterpolationDuration(this.teleportDuration);
-        meta.setTranslation(super.toVector3f(this.translation));
-        meta.setScale(super.toVector3f(this.scale));
-        meta.setBillboardConstraints(AbstractDisplayMeta.BillboardConstraints.valueOf(this.billboard.name()));
-        meta.setViewRange((float) this.viewRange);
-        meta.setBlockId(this.block);
-        meta.setLeftRotation(this.leftRotation);
-        meta.setRightRotation(this.rightRotation);
-        meta.setOnFire(this.onFire);
-        meta.setInvisible(this.isInvisible);
-        if(super.brightness > -1) meta.setBrightnessOverride(super.brightness);
-        meta.setGlowing(this.glowing);
-        meta.setGlowColorOverride(this.glowColor);
+        applyDisplayMeta(meta);
+        if (isDirty(MetaField.ENTITY_FLAGS)) meta.setOnFire(this.onFire);
+        applyIfDirty(MetaField.BLOCK, () -> meta.setBlockId(this.block));
         return meta;
     }
 
+    public BlockHologram setBlock(int block) {
+        this.block = block;
+        markDirty(MetaField.BLOCK);
+        return this;
+    }
+
+    public BlockHologram setOnFire(boolean onFire) {
+        this.onFire = onFire;
+        markDirty(MetaField.ENTITY_FLAGS);
+        return this;
+    }
+
     @Override
     int getHeight() {
         return (int) this.scale.y;
@@ -93,7 +86,10 @@ public class BlockHologram extends Hologram<BlockHologram> {
         copy.interpolationDurationTransformation = this.interpolationDurationTransformation;
         copy.viewRange = this.viewRange;
         copy.updateTaskPeriod = this.updateTaskPeriod;
+        copy.priority = this.priority;
+        copy.deferredUpdates = this.deferredUpdates;
         copy.maxPlayerRenderDistanceSquared = this.maxPlayerRenderDistanceSquared;
+        copy.despawnDistanceSquared = this.despawnDistanceSquared;
         return copy;
     }
 }
\ No newline at end of file
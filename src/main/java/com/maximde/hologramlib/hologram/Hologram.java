@@ -6,6 +6,7 @@ import com.github.retrooper.packetevents.wrapper.PacketWrapper;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerSetPassengers;
 import com.maximde.hologramlib.HologramLib;
 import com.maximde.hologramlib.utils.BukkitTasks;
+import com.maximde.hologramlib.utils.PacketQueue;
 import com.maximde.hologramlib.utils.TaskHandle;
 import com.maximde.hologramlib.utils.Vector3F;
 import io.github.retrooper.packetevents.util.SpigotConversionUtil;
@@ -13,6 +14,7 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.experimental.Accessors;
 import me.tofaa.entitylib.meta.EntityMeta;
+import me.tofaa.entitylib.meta.display.AbstractDisplayMeta;
 import me.tofaa.entitylib.wrapper.WrapperEntity;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -31,6 +33,7 @@ import java.awt.*;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 @SuppressWarnings({"unused", "UnusedReturnValue", "deprecation", "DeprecatedIsStillUsed"})
@@ -44,10 +47,10 @@ public abstract class Hologram<T extends Hologram<T>> {
     protected Location location;
 
     /**
-     * Players which will not be automatically added as viewers no matter which render mode
+     * Players which will not be automatically added as viewers no matter which render mode.
+     * Stored by UUID, so the blacklist still applies after the player rejoins.
      */
-    @Getter
-    private final Set<Player> blacklistedViewers = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> blacklistedViewers = ConcurrentHashMap.newKeySet();
 
     @Getter
     protected boolean dead = true;
@@ -62,6 +65,54 @@ public abstract class Hologram<T extends Hologram<T>> {
     @Getter @Accessors(chain = true)
     protected double maxPlayerRenderDistanceSquared = 62500;
 
+    /**
+     * Squared distance at which an existing viewer gets removed again.
+     * Values smaller than {@link #maxPlayerRenderDistanceSquared} are ignored,
+     * a bigger value creates a band where players are neither added nor removed.
+     */
+    protected double despawnDistanceSquared = 62500;
+
+    /**
+     * Counts how often a viewer was kept because it was inside the despawn band
+     */
+    private final LongAdder suppressedViewerToggles = new LongAdder();
+
+    /**
+     * Viewers which are currently only kept because of the despawn band
+     */
+    private final Set<UUID> bandViewers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Metadata fields which changed since the last update, all fields are dirty before the first update
+     */
+    private final Set<MetaField> dirtyFields = EnumSet.allOf(MetaField.class);
+
+    /**
+     * Fields sent by {@link #sendTransformNow()}
+     */
+    private static final Set<MetaField> TRANSFORM_FIELDS = EnumSet.of(MetaField.INTERPOLATION_DURATION, MetaField.TELEPORT_DURATION,
+            MetaField.TRANSLATION, MetaField.LEFT_ROTATION, MetaField.RIGHT_ROTATION, MetaField.SCALE);
+
+    /**
+     * Estimated amount of metadata bytes which were not sent because the fields did not change
+     */
+    private static final LongAdder savedMetadataBytes = new LongAdder();
+
+    /**
+     * Holograms with a higher priority are preferred when the visibility engine
+     * limits the amount of holograms a single player can see
+     */
+    @Getter @Accessors(chain = true)
+    protected int priority = 0;
+
+    /**
+     * In deferred mode {@link #update()} only schedules the update, all calls within the same tick are merged into one
+     */
+    @Getter @Accessors(chain = true)
+    protected boolean deferredUpdates = false;
+
+    private final Runnable deferredUpdate = this::updateNow;
+
     @Getter @Accessors(chain = true)
     protected Display.Billboard billboard = Display.Billboard.CENTER;
 
@@ -122,6 +173,11 @@ public abstract class Hologram<T extends Hologram<T>> {
 
     protected @Nullable Integer attachedEntityId;
 
+    /**
+     * Player resolved from the attached entity id, null if the entity is not a player
+     */
+    private volatile @Nullable Player attachedPlayer;
+
     @Getter
     protected boolean interactive;
 
@@ -131,10 +187,19 @@ public abstract class Hologram<T extends Hologram<T>> {
     @Getter
     protected InteractionBox.OnInteract onInteract;
 
-    public interface Internal {
+    private @Nullable VisibilityEngine visibilityEngine;
+
+    public interface Internal extends VisibilityTarget {
         Hologram<?> spawn(Location location, boolean ignorePitchYaw);
         void kill();
         void setLocation(Location location);
+        /**
+         * Moves the entity and its interaction box without updating the visibility engine,
+         * used by batch teleports which relocate all entities at once
+         */
+        void moveTo(Location location);
+        Hologram<?> getHologram();
+        void forgetViewer(Player player);
     }
 
     protected Hologram(String id, EntityType entityType) {
@@ -145,17 +210,23 @@ public abstract class Hologram<T extends Hologram<T>> {
     protected Hologram(String id, RenderMode renderMode, EntityType entityType) {
         this.entityType = entityType;
         validateId(id);
-        this.entity = new WrapperEntity(entityType);
+        this.entity = new QueuedEntity(entityType, this::rankViewer);
         this.id = id;
         this.entityID = entity.getEntityId();
         this.renderMode = renderMode;
         this.internalAccess = new InternalSetters();
-        startRunnable();
     }
 
-    private void startRunnable() {
-        if (task != null) return;
-        task = BukkitTasks.runTaskTimerAsync(this::updateAffectedPlayers, 20L, updateTaskPeriod);
+    /**
+     * Registers this hologram at the shared visibility engine.
+     * Holograms are only tracked while they are spawned.
+     */
+    private void startTracking() {
+        if (task != null && !task.isCancelled()) return;
+        HologramLib.getManager().ifPresent(manager -> {
+            this.visibilityEngine = manager.getVisibilityEngine();
+            this.task = this.visibilityEngine.track(this.internalAccess);
+        });
     }
 
 
@@ -176,28 +247,227 @@ public abstract class Hologram<T extends Hologram<T>> {
         public void setLocation(Location location) {
             Hologram.this.setLocation(location);
         }
+
+        @Override
+        public void moveTo(Location location) {
+            Hologram.this.location = location;
+            Hologram.this.move(location);
+            if (Hologram.this.interactionBox != null) Hologram.this.interactionBox.getInternalAccess().moveTo(location);
+        }
+
+        @Override
+        public Hologram<?> getHologram() {
+            return Hologram.this;
+        }
+
+        @Override
+        public void forgetViewer(Player player) {
+            Hologram.this.forgetViewer(player);
+        }
+
+        @Override
+        public void updateAffectedPlayers() {
+            Hologram.this.updateAffectedPlayers();
+        }
+
+        @Override
+        public void updateAffectedPlayers(Collection<? extends Player> candidates) {
+            Hologram.this.updateAffectedPlayers(candidates);
+        }
+
+        @Override
+        public void updateViewer(Player player, Location playerLocation) {
+            Hologram.this.updateViewer(player, playerLocation);
+        }
+
+        @Override
+        public boolean isEligible(Player player) {
+            return Hologram.this.isEligible(player);
+        }
+
+        @Override
+        public double getMaxPlayerRenderDistanceSquared() {
+            return Hologram.this.maxPlayerRenderDistanceSquared;
+        }
+
+        @Override
+        public double getDespawnDistanceSquared() {
+            return Hologram.this.getDespawnDistanceSquared();
+        }
+
+        @Override
+        public Location getLocation() {
+            return Hologram.this.location;
+        }
+
+        @Override
+        public long getUpdateTaskPeriod() {
+            return Hologram.this.updateTaskPeriod;
+        }
+
+        @Override
+        public boolean isDead() {
+            return Hologram.this.dead;
+        }
+
+        @Override
+        public int getPriority() {
+            return Hologram.this.priority;
+        }
+
+        @Override
+        public boolean isCapped() {
+            return true;
+        }
+
+        @Override
+        public Collection<? extends VisibilityTarget> getFollowers() {
+            InteractionBox interactionBox = Hologram.this.interactionBox;
+            return interactionBox == null ? Collections.emptyList() : Collections.singletonList(interactionBox.getInternalAccess());
+        }
     }
 
     private void setLocation(Location location) {
         this.location = location;
+        relocate();
+    }
+
+    private void relocate() {
+        if (this.visibilityEngine != null) this.visibilityEngine.relocate(this.internalAccess);
+    }
+
+    private void renderDistanceChanged() {
+        if (this.visibilityEngine != null) this.visibilityEngine.renderDistanceChanged(this.internalAccess);
+    }
+
+    /**
+     * Moves the entity, sending relative moves to the viewers where possible
+     */
+    private void move(Location location) {
+        if (this.entity instanceof QueuedEntity queuedEntity) {
+            queuedEntity.move(SpigotConversionUtil.fromBukkitLocation(location));
+        } else {
+            this.entity.teleport(SpigotConversionUtil.fromBukkitLocation(location));
+        }
     }
 
     /**
      * Updates the set properties for the entity (shows them to the players).
      * Should be called after making any changes to the hologram object.
+     * In deferred mode the update runs at the start of the next tick instead.
      */
     public T update() {
+        if (this.deferredUpdates && this.visibilityEngine != null) {
+            this.visibilityEngine.deferUpdate(this.deferredUpdate, this.internalAccess);
+            return self();
+        }
+        return updateNow();
+    }
+
+    /**
+     * Same as {@link #update()}, but always applies the changes right away
+     */
+    public T updateNow() {
+        if (this.dead && this.deferredUpdates) return self();
         this.updateAffectedPlayers();
-        this.applyMeta();
+        EntityMeta meta = this.entity.getEntityMeta();
+        meta.setNotifyAboutChanges(false);
+        synchronized (this.dirtyFields) {
+            this.applyMeta();
+            this.dirtyFields.clear();
+        }
+        meta.setNotifyAboutChanges(true);
         return self();
     }
 
+    /**
+     * Sends the changed transformation and duration fields to the current viewers, without recalculating the viewers.
+     * Other changed fields stay marked for the next update. Used by the {@link TransformAnimator} for every step.
+     */
+    void sendTransformNow() {
+        if (this.dead || !(this.entity.getEntityMeta() instanceof AbstractDisplayMeta meta)) return;
+        meta.setNotifyAboutChanges(false);
+        synchronized (this.dirtyFields) {
+            applyTransformMeta(meta);
+            this.dirtyFields.removeAll(TRANSFORM_FIELDS);
+        }
+        meta.setNotifyAboutChanges(true);
+    }
+
+    /**
+     * Marks metadata fields as changed, so they are sent on the next update
+     */
+    protected void markDirty(MetaField... fields) {
+        synchronized (this.dirtyFields) {
+            Collections.addAll(this.dirtyFields, fields);
+        }
+    }
+
+    protected boolean isDirty(MetaField field) {
+        synchronized (this.dirtyFields) {
+            return this.dirtyFields.contains(field);
+        }
+    }
+
+    /**
+     * Runs the setter if the field changed since the last update, otherwise counts the saved bytes.
+     * Used inside {@link #applyMeta()}.
+     */
+    protected void applyIfDirty(MetaField field, Runnable setter) {
+        applyIfDirty(field, field.getEstimatedBytes(), setter);
+    }
+
+    protected void applyIfDirty(MetaField field, int estimatedBytes, Runnable setter) {
+        if (isDirty(field)) {
+            setter.run();
+        } else {
+            savedMetadataBytes.add(estimatedBytes);
+        }
+    }
+
+    /**
+     * Applies the display fields all display entities share, only the changed ones are set
+     */
+    protected void applyDisplayMeta(AbstractDisplayMeta meta) {
+        applyTransformMeta(meta);
+        applyIfDirty(MetaField.BILLBOARD, () -> meta.setBillboardConstraints(AbstractDisplayMeta.BillboardConstraints.valueOf(this.billboard.name())));
+        applyIfDirty(MetaField.VIEW_RANGE, () -> meta.setViewRange((float) this.viewRange));
+        applyIfDirty(MetaField.ENTITY_FLAGS, () -> {
+            meta.setGlowing(this.glowing);
+            meta.setInvisible(this.isInvisible);
+        });
+        applyIfDirty(MetaField.GLOW_COLOR, () -> meta.setGlowColorOverride(this.glowColor));
+        applyIfDirty(MetaField.BRIGHTNESS, () -> {
+            if (this.brightness > -1) meta.setBrightnessOverride(this.brightness);
+        });
+    }
+
+    private void applyTransformMeta(AbstractDisplayMeta meta) {
+        if (isDirty(MetaField.TRANSLATION) || isDirty(MetaField.LEFT_ROTATION) ||
+                isDirty(MetaField.RIGHT_ROTATION) || isDirty(MetaField.SCALE)) {
+            meta.setInterpolationDelay(-1);
+        }
+        applyIfDirty(MetaField.INTERPOLATION_DURATION, () -> meta.setTransformationInterpolationDuration(this.interpolationDurationTransformation));
+        applyIfDirty(MetaField.TELEPORT_DURATION, () -> meta.setPositionRotationInterpolationDuration(this.teleportDuration));
+        applyIfDirty(MetaField.TRANSLATION, () -> meta.setTranslation(toVector3f(this.translation)));
+        applyIfDirty(MetaField.LEFT_ROTATION, () -> meta.setLeftRotation(this.leftRotation));
+        applyIfDirty(MetaField.RIGHT_ROTATION, () -> meta.setRightRotation(this.rightRotation));
+        applyIfDirty(MetaField.SCALE, () -> meta.setScale(toVector3f(this.scale)));
+    }
+
+    /**
+     * @return Estimated amount of metadata bytes all holograms did not send because the fields did not change
+     */
+    public static long getSavedMetadataBytes() {
+        return savedMetadataBytes.sum();
+    }
+
     public T setRenderMode(RenderMode newRenderMode) {
         if (newRenderMode == null) throw new IllegalArgumentException("RenderMode cannot be null");
         if (this.renderMode == newRenderMode) return self();
         BukkitTasks.runTask(() -> {
             if (this.renderMode == RenderMode.NOT_ATTACHED_PLAYER && attachedEntityId != null) {
-                Player attachedPlayer = getPlayerByEntityId(attachedEntityId);
+                Player attachedPlayer = getAttachedPlayer();
                 if (attachedPlayer != null) {
                     addViewer(attachedPlayer);
                 }
@@ -225,15 +495,18 @@ public abstract class Hologram<T extends Hologram<T>> {
     @Deprecated
     public void kill() {
         this.entity.remove();
-        this.task.cancel();
+        if (this.entity instanceof QueuedEntity queuedEntity) queuedEntity.resetMoves();
+        if (this.task != null) this.task.cancel();
         this.dead = true;
+        retainDetails(Collections.emptySet());
         if (this.interactionBox != null) this.interactionBox.kill();
         this.interactive = false;
     }
 
     public T teleport(Location newLocation) {
         this.location = newLocation;
-        this.entity.teleport(SpigotConversionUtil.fromBukkitLocation(newLocation));
+        move(newLocation);
+        relocate();
         if (this.interactionBox != null) this.interactionBox.teleport(newLocation);
         return self();
     }
@@ -249,21 +522,37 @@ public abstract class Hologram<T extends Hologram<T>> {
         return new Vector3F(this.scale.x, this.scale.y, this.scale.z);
     }
 
+    /**
+     * Updates which players should be able to see this hologram based on the render mode.
+     * Checks every player in the hologram's world.
+     */
+    private void updateAffectedPlayers() {
+        World world = this.location == null ? null : this.location.getWorld();
+        if (world == null) {
+            this.updateAffectedPlayers(Collections.<Player>emptyList());
+        } else {
+            this.updateAffectedPlayers(this.visibilityEngine == null ? world.getPlayers() : this.visibilityEngine.getPlayers(world));
+        }
+    }
+
     /**
      * Updates which players should be able to see this hologram based on the render mode.
      * For ALL mode, adds all online players.
      * For VIEWER_LIST mode, only uses manually added viewers.
      * Removes viewers who are too far away or in different worlds.
+     *
+     * @param candidates Players which are close enough to possibly see the hologram,
+     *                   every viewer which is not part of it gets removed
      */
-    private void updateAffectedPlayers() {
+    private void updateAffectedPlayers(Collection<? extends Player> candidates) {
         if(this.dead) return;
 
         if(renderMode == RenderMode.VIEWER_LIST) {
             if (attachedEntityId != null) {
-                Player attachedPlayer = getPlayerByEntityId(attachedEntityId);
+                Player attachedPlayer = getAttachedPlayer();
                 if (attachedPlayer != null && attachedPlayer.isOnline()) {
-                    Location playerLocation = attachedPlayer.getLocation();
-                    if (playerLocation.getWorld() != null) {
+                    Location playerLocation = locate(attachedPlayer);
+                    if (playerLocation != null && playerLocation.getWorld() != null) {
                         this.teleport(playerLocation);
                     }
                 }
@@ -289,40 +578,158 @@ public abstract class Hologram<T extends Hologram<T>> {
         World world = this.location.getWorld();
 
         if (world != null &&  (this.renderMode == RenderMode.ALL || this.renderMode == RenderMode.NEARBY || this.renderMode == RenderMode.NOT_ATTACHED_PLAYER)) {
-            List<Player> viewersToKeep = List.copyOf(world.getPlayers());
-            viewersToKeep = viewersToKeep.stream()
-                    .filter(Objects::nonNull)
-                    .filter(player ->
-                            player.isOnline() &&
-                                    !this.blacklistedViewers.contains(player) &&
-                                    Objects.equals(player.getLocation().getWorld(), world) &&
-                                    player.getLocation().distanceSquared(this.location) <= this.maxPlayerRenderDistanceSquared
-                    )
-                    .toList();
+            Map<Player, Location> playersInRange = new LinkedHashMap<>();
+            for (Player player : candidates) {
+                if (player == null) continue;
+                Location playerLocation = locate(player);
+                if (playerLocation != null && isInRange(player, playerLocation)) playersInRange.put(player, playerLocation);
+            }
 
             if (this.renderMode == RenderMode.NOT_ATTACHED_PLAYER && attachedEntityId != null) {
-                Player attachedPlayer = getPlayerByEntityId(attachedEntityId);
-                if (attachedPlayer != null) {
-                    viewersToKeep = viewersToKeep.stream()
-                            .filter(player -> !player.equals(attachedPlayer))
-                            .toList();
-                }
+                Player attachedPlayer = getAttachedPlayer();
+                if (attachedPlayer != null) playersInRange.remove(attachedPlayer);
             }
 
-            Set<UUID> viewersToRemove = new HashSet<>(this.entity.getViewers());
-            viewersToKeep.forEach(player -> viewersToRemove.remove(player.getUniqueId()));
+            Set<UUID> uuidsInRange = new HashSet<>();
+            playersInRange.keySet().forEach(player -> uuidsInRange.add(player.getUniqueId()));
+            retainDetails(uuidsInRange);
+
+            List<Player> viewersToKeep = new ArrayList<>(playersInRange.size());
+            playersInRange.forEach((player, playerLocation) -> {
+                if (updateDetail(player, playerLocation)) viewersToKeep.add(player);
+            });
+
+            ViewerSlots.Diff diff = ((QueuedEntity) this.entity).diffViewers(viewersToKeep);
+            diff.removed().forEach(this::removeEntityViewer);
+            diff.added().forEach(this::addViewer);
+
+        }
+    }
+
+    /**
+     * Checks the render mode, the blacklist and the attached player, ignoring the range
+     */
+    private boolean isEligible(Player player) {
+        if (this.renderMode != RenderMode.ALL && this.renderMode != RenderMode.NEARBY && this.renderMode != RenderMode.NOT_ATTACHED_PLAYER) return false;
+        if (this.blacklistedViewers.contains(player.getUniqueId())) return false;
+        return !(this.renderMode == RenderMode.NOT_ATTACHED_PLAYER && attachedEntityId != null && player.getEntityId() == attachedEntityId);
+    }
+
+    /**
+     * Adds or removes the player as viewer based on the given player position.
+     * Used to react on player movement without recalculating all viewers.
+     */
+    private void updateViewer(Player player, Location playerLocation) {
+        if (this.dead || this.location == null) return;
+        if (this.renderMode != RenderMode.ALL && this.renderMode != RenderMode.NEARBY && this.renderMode != RenderMode.NOT_ATTACHED_PLAYER) return;
+
+        boolean visible = isInRange(player, playerLocation) &&
+                !(this.renderMode == RenderMode.NOT_ATTACHED_PLAYER && attachedEntityId != null && player.getEntityId() == attachedEntityId);
+
+        if (visible && updateDetail(player, playerLocation)) {
+            if (!this.entity.hasViewer(player.getUniqueId())) addViewer(player);
+            return;
+        }
+        if (this.entity.hasViewer(player.getUniqueId())) removeEntityViewer(player.getUniqueId());
+        if (!visible) resetDetail(player.getUniqueId());
+    }
+
+    /**
+     * Called for every player which is in range, before the player gets added as viewer.
+     * Used by subclasses to choose a level of detail per player.
+     *
+     * @return false if the player should not see this entity itself, for example because a replacement is shown
+     */
+    protected boolean updateDetail(Player player, Location playerLocation) {
+        return true;
+    }
+
+    /**
+     * Called with all players which are in range after a full viewer update.
+     * Subclasses have to forget the detail state of every other player.
+     */
+    protected void retainDetails(Set<UUID> playersInRange) {
+    }
+
+    /**
+     * Called when the player no longer sees this entity
+     */
+    protected void resetDetail(UUID player) {
+    }
+
+    /**
+     * Called after the entity got spawned, used by subclasses to register at shared timers again
+     */
+    protected void onSpawn() {
+    }
+
+    /**
+     * Called when the player leaves the server, per player state of the entity can be dropped
+     */
+    protected void forgetDetail(UUID player) {
+    }
+
+    /**
+     * @return Whether the player currently sees a replacement of this entity
+     */
+    protected boolean hasDetail(UUID player) {
+        return false;
+    }
+
+    /**
+     * @return The location of the player which is safe to read from the current thread
+     */
+    private @Nullable Location locate(Player player) {
+        return this.visibilityEngine == null ? player.getLocation() : this.visibilityEngine.getPlayerLocation(player);
+    }
 
-            viewersToRemove.forEach(this.entity::removeViewer);
-            this.addAllViewers(viewersToKeep);
+    /**
+     * Ranks the updates of this hologram for a viewer by priority and distance,
+     * the lowest ranked updates are deferred first when the viewer exceeds its bandwidth budget
+     */
+    private double rankViewer(UUID viewer) {
+        double weight = this.visibilityEngine == null ? 16 : this.visibilityEngine.getPriorityWeight();
+        Player player = PlayerIndex.get(viewer);
+        Location playerLocation = player == null ? null : locate(player);
+        Location location = this.location;
+        double distance = playerLocation == null || location == null || playerLocation.getWorld() != location.getWorld()
+                ? Math.sqrt(getDespawnDistanceSquared())
+                : playerLocation.distance(location);
+        return this.priority * weight - distance;
+    }
 
+    /**
+     * Checks if the player is close enough to see the hologram from the given position, ignoring the render mode.
+     * Also respects the per player limit of the visibility engine.
+     */
+    private boolean isInRange(Player player, Location playerLocation) {
+        World world = this.location.getWorld();
+        if (!player.isOnline() || this.blacklistedViewers.contains(player.getUniqueId()) || world == null ||
+                !Objects.equals(playerLocation.getWorld(), world)) return false;
+
+        UUID uuid = player.getUniqueId();
+        double distanceSquared = playerLocation.distanceSquared(this.location);
+        if (distanceSquared > this.maxPlayerRenderDistanceSquared) {
+            if (distanceSquared > getDespawnDistanceSquared() || (!this.entity.hasViewer(uuid) && !hasDetail(uuid))) {
+                this.bandViewers.remove(uuid);
+                return false;
+            }
+            // Only count the moment the viewer enters the band, not every sweep it stays there
+            if (this.bandViewers.add(uuid)) {
+                this.suppressedViewerToggles.increment();
+                if (this.visibilityEngine != null) this.visibilityEngine.recordSuppressedToggle();
+            }
+        } else {
+            this.bandViewers.remove(uuid);
         }
+
+        return this.visibilityEngine == null || this.visibilityEngine.isAllowed(this.internalAccess, player, playerLocation);
     }
 
     protected void sendPacket(PacketWrapper<?> packet, List<Player> players) {
         if (this.renderMode == RenderMode.NONE) return;
 
-        players.forEach(player ->
-                HologramLib.getPlayerManager().sendPacket(player, packet));
+        players.forEach(player -> PacketQueue.enqueue(player, packet));
     }
 
     private void spawn(Location location, boolean ignorePitchYaw) {
@@ -331,8 +738,12 @@ public abstract class Hologram<T extends Hologram<T>> {
             this.location.setPitch(0);
             this.location.setYaw(0);
         }
+        if (this.entity instanceof QueuedEntity queuedEntity) queuedEntity.resetMoves();
         this.entity.spawn(SpigotConversionUtil.fromBukkitLocation(this.location));
         this.dead = false;
+        startTracking();
+        relocate();
+        onSpawn();
         if (this.interactionBox != null) this.interactionBox.teleport(location);
     }
 
@@ -353,13 +764,23 @@ public abstract class Hologram<T extends Hologram<T>> {
      * @param entityId The entity ID to search for
      * @return The player if found, null otherwise
      */
-    private Player getPlayerByEntityId(int entityId) {
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            if (player.getEntityId() == entityId) {
-                return player;
-            }
+    private @Nullable Player getPlayerByEntityId(int entityId) {
+        return PlayerIndex.getByEntityId(entityId);
+    }
+
+    /**
+     * Returns the player this entity is attached to.
+     * The player is resolved once when attaching and only looked up again if it went offline.
+     */
+    private @Nullable Player getAttachedPlayer() {
+        Integer entityId = this.attachedEntityId;
+        if (entityId == null) return null;
+        Player player = this.attachedPlayer;
+        if (player == null || !player.isOnline() || player.getEntityId() != entityId) {
+            player = getPlayerByEntityId(entityId);
+            this.attachedPlayer = player;
         }
-        return null;
+        return player;
     }
 
     /**
@@ -374,9 +795,9 @@ public abstract class Hologram<T extends Hologram<T>> {
      */
     public void attach(int entityId) {
         attachedEntityId = entityId;
+        attachedPlayer = getPlayerByEntityId(entityId);
 
         if (renderMode == RenderMode.NOT_ATTACHED_PLAYER) {
-            Player attachedPlayer = getPlayerByEntityId(entityId);
             if (attachedPlayer != null) {
                 removeViewer(attachedPlayer);
             }
@@ -392,7 +813,7 @@ public abstract class Hologram<T extends Hologram<T>> {
     public void detach() {
         if (attachedEntityId != null) {
             if (renderMode == RenderMode.NOT_ATTACHED_PLAYER) {
-                Player previouslyAttachedPlayer = getPlayerByEntityId(attachedEntityId);
+                Player previouslyAttachedPlayer = getAttachedPlayer();
                 if (previouslyAttachedPlayer != null) {
                     addViewer(previouslyAttachedPlayer);
                 }
@@ -401,6 +822,7 @@ public abstract class Hologram<T extends Hologram<T>> {
             WrapperPlayServerSetPassengers detachPacket = new WrapperPlayServerSetPassengers(attachedEntityId, removeElement(PassengerManager.getPassengers(attachedEntityId), this.entityID));
             BukkitTasks.runTaskAsync(() -> this.entity.sendPacketsToViewers(detachPacket));
             attachedEntityId = null;
+            attachedPlayer = null;
         }
     }
 
@@ -440,11 +862,11 @@ public abstract class Hologram<T extends Hologram<T>> {
     }
 
     public void addToViewerBlacklist(Player player) {
-        this.blacklistedViewers.add(player);
+        this.blacklistedViewers.add(player.getUniqueId());
     }
 
     public void removeFromViewerBlacklist(Player player) {
-        this.blacklistedViewers.remove(player);
+        this.blacklistedViewers.remove(player.getUniqueId());
     }
 
     /**
@@ -489,13 +911,87 @@ public abstract class Hologram<T extends Hologram<T>> {
         return self();
     }
 
+    public T setPriority(int priority) {
+        this.priority = priority;
+        return self();
+    }
+
+    /**
+     * Plays a keyframe animation of the transformation and position, the client interpolates between the keyframes.
+     * Replaces the keyframe animation which is currently running on this hologram.
+     */
+    public T playAnimation(TransformAnimation animation) {
+        HologramLib.getManager().ifPresent(manager -> manager.getTransformAnimator().play(this, animation));
+        return self();
+    }
+
+    public T stopAnimation() {
+        HologramLib.getManager().ifPresent(manager -> manager.getTransformAnimator().stop(this));
+        return self();
+    }
+
+    /**
+     * Enables the deferred mode, in which repeated {@link #update()} calls of the same tick only send the final state once.
+     * The update then runs on the main thread, on Folia on the thread owning the region of the hologram.
+     * Only has an effect on holograms which are spawned through the HologramManager.
+     */
+    public T setDeferredUpdates(boolean deferredUpdates) {
+        this.deferredUpdates = deferredUpdates;
+        return self();
+    }
+
     public T setMaxPlayerRenderDistanceSquared(double maxPlayerRenderDistanceSquared) {
         this.maxPlayerRenderDistanceSquared = maxPlayerRenderDistanceSquared;
+        renderDistanceChanged();
+        return self();
+    }
+
+    /**
+     * Sets the squared distance at which existing viewers get removed.
+     * Has no effect if it is smaller than the max player render distance.
+     */
+    public T setDespawnDistanceSquared(double despawnDistanceSquared) {
+        this.despawnDistanceSquared = despawnDistanceSquared;
+        renderDistanceChanged();
+        return self();
+    }
+
+    /**
+     * Sets separate distances for adding and removing viewers.
+     * Players start seeing the entity when they get closer than spawnDistance
+     * and only stop seeing it when they are further away than despawnDistance.
+     * This prevents spawn and destroy packets for players standing right at the border.
+     *
+     * @param spawnDistance Distance in blocks at which players are added as viewers
+     * @param despawnDistance Distance in blocks at which viewers are removed, has to be at least spawnDistance
+     */
+    public T setRenderDistance(double spawnDistance, double despawnDistance) {
+        if (despawnDistance < spawnDistance) {
+            throw new IllegalArgumentException("The despawn distance cannot be smaller than the spawn distance");
+        }
+        this.maxPlayerRenderDistanceSquared = spawnDistance * spawnDistance;
+        this.despawnDistanceSquared = despawnDistance * despawnDistance;
+        renderDistanceChanged();
         return self();
     }
 
+    /**
+     * @return The squared distance at which viewers are removed, never smaller than the max player render distance
+     */
+    public double getDespawnDistanceSquared() {
+        return Math.max(this.despawnDistanceSquared, this.maxPlayerRenderDistanceSquared);
+    }
+
+    /**
+     * @return How often a viewer toggle was suppressed by the despawn band
+     */
+    public long getSuppressedViewerToggles() {
+        return this.suppressedViewerToggles.sum();
+    }
+
     public T setBillboard(Display.Billboard billboard) {
         this.billboard = billboard;
+        markDirty(MetaField.BILLBOARD);
         return self();
     }
 
@@ -507,21 +1003,25 @@ public abstract class Hologram<T extends Hologram<T>> {
     @Deprecated(forRemoval = true)
     public T setInterpolationDurationRotation(int teleportDuration) {
         this.teleportDuration = teleportDuration;
+        markDirty(MetaField.TELEPORT_DURATION);
         return self();
     }
 
     public T setTeleportDuration(int teleportDuration) {
         this.teleportDuration = teleportDuration;
+        markDirty(MetaField.TELEPORT_DURATION);
         return self();
     }
 
     public T setInterpolationDurationTransformation(int interpolationDurationTransformation) {
         this.interpolationDurationTransformation = interpolationDurationTransformation;
+        markDirty(MetaField.INTERPOLATION_DURATION);
         return self();
     }
 
     public T setViewRange(double viewRange) {
         this.viewRange = viewRange;
+        markDirty(MetaField.VIEW_RANGE);
         return self();
     }
 
@@ -554,26 +1054,31 @@ public abstract class Hologram<T extends Hologram<T>> {
 
         this.leftRotation = new Quaternion4f(rotation.x, rotation.y, rotation.z, rotation.w);
         this.rightRotation = new Quaternion4f(0, 0, 0, 1);
+        markDirty(MetaField.LEFT_ROTATION, MetaField.RIGHT_ROTATION);
         return self();
     }
 
     public T setLeftRotation(float x, float y, float z, float w) {
         this.leftRotation = new Quaternion4f(x, y, z, w);
+        markDirty(MetaField.LEFT_ROTATION);
         return self();
     }
 
     public T setRightRotation(float x, float y, float z, float w) {
         this.rightRotation = new Quaternion4f(x, y, z, w);
+        markDirty(MetaField.RIGHT_ROTATION);
         return self();
     }
 
     public T setTranslation(float x, float y, float z) {
         this.translation = new Vector3f(x, y, z);
+        markDirty(MetaField.TRANSLATION);
         return self();
     }
 
     public T setTranslation(Vector3F translation) {
         this.translation = new Vector3f(translation.x, translation.y, translation.z);
+        markDirty(MetaField.TRANSLATION);
         return self();
     }
 
@@ -585,6 +1090,7 @@ public abstract class Hologram<T extends Hologram<T>> {
                 .setHeight(this.getHeight())
                 .setWidth(this.getWidth())
                 .setResponsive(true);
+        this.interactionBox.setOwner(this.internalAccess);
         return self();
     }
 
@@ -611,6 +1117,7 @@ public abstract class Hologram<T extends Hologram<T>> {
         this.rightRotation = new Quaternion4f(rightRotation.x(), rightRotation.y(), rightRotation.z(), rightRotation.w());
         Quaternionf leftRotation = transformation.getLeftRotation();
         this.leftRotation = new Quaternion4f(leftRotation.x(), leftRotation.y(), leftRotation.z(), leftRotation.w());
+        markDirty(MetaField.TRANSLATION, MetaField.SCALE, MetaField.LEFT_ROTATION, MetaField.RIGHT_ROTATION);
         return self();
     }
 
@@ -623,11 +1130,13 @@ public abstract class Hologram<T extends Hologram<T>> {
         this.glowColor = ((rgb & 0xFF0000) >> 16) |
                 (rgb & 0x00FF00) |
                 ((rgb & 0x0000FF) << 16);
+        markDirty(MetaField.GLOW_COLOR);
         return self();
     }
 
     public T setGlowing(boolean glowing) {
         this.glowing = glowing;
+        markDirty(MetaField.ENTITY_FLAGS);
         return self();
     }
 
@@ -642,11 +1151,13 @@ public abstract class Hologram<T extends Hologram<T>> {
         Quaternionf leftRotation = new Quaternionf();
         matrix4f.getNormalizedRotation(leftRotation);
         this.leftRotation = new Quaternion4f(leftRotation.x(), leftRotation.y(), leftRotation.z(), leftRotation.w());
+        markDirty(MetaField.TRANSLATION, MetaField.SCALE, MetaField.LEFT_ROTATION, MetaField.RIGHT_ROTATION);
         return self();
     }
 
     public T setBrightness(int brightness) {
         this.brightness = brightness;
+        markDirty(MetaField.BRIGHTNESS);
         return self();
     }
 
@@ -662,6 +1173,7 @@ public abstract class Hologram<T extends Hologram<T>> {
             throw new IllegalArgumentException("skyLight must be between 0 and 15");
         }
         this.brightness = blockLight << 4 | skyLight << 20;
+        markDirty(MetaField.BRIGHTNESS);
         return self();
     }
 
@@ -677,10 +1189,53 @@ public abstract class Hologram<T extends Hologram<T>> {
     }
 
     public T removeViewer(Player player) {
-        this.entity.removeViewer(player.getUniqueId());
+        removeEntityViewer(player.getUniqueId());
+        resetDetail(player.getUniqueId());
         return self();
     }
 
+    /**
+     * Removes the player from the viewers of the entity without touching the detail state
+     */
+    protected void removeEntityViewer(UUID player) {
+        this.entity.removeViewer(player);
+        this.bandViewers.remove(player);
+    }
+
+    /**
+     * Forgets the viewer state of a player which leaves the server, the blacklist is kept
+     */
+    private void forgetViewer(Player player) {
+        removeEntityViewer(player.getUniqueId());
+        resetDetail(player.getUniqueId());
+        forgetDetail(player.getUniqueId());
+    }
+
+    /**
+     * Returns a snapshot of the blacklisted players which are online, changing it does not change the blacklist.
+     * Use {@link #addToViewerBlacklist(Player)} and {@link #removeFromViewerBlacklist(Player)} instead.
+     *
+     * @return The online players which will not be automatically added as viewers
+     */
+    public Set<Player> getBlacklistedViewers() {
+        Set<Player> players = new HashSet<>();
+        this.blacklistedViewers.forEach(uuid -> {
+            Player player = PlayerIndex.get(uuid);
+            if (player != null) players.add(player);
+        });
+        return players;
+    }
+
+    /**
+     * @return The UUIDs of all blacklisted players including offline ones, cannot be modified
+     */
+    public Set<UUID> getBlacklistedViewerUUIDs() {
+        return Collections.unmodifiableSet(this.blacklistedViewers);
+    }
+
+    /**
+     * @return A view of the viewers backed by their player slots, it cannot be modified
+     */
     public Set<UUID> getViewerUUIDs() {
         return this.entity.getViewers();
     }
@@ -703,17 +1258,19 @@ public abstract class Hologram<T extends Hologram<T>> {
     }
 
     public T removeAllViewers() {
-        this.entity.getViewers().forEach(this.entity::removeViewer);
+        new ArrayList<>(this.entity.getViewers()).forEach(this.entity::removeViewer);
         return self();
     }
 
     public T setScale(float x, float y, float z) {
         this.scale = new Vector3f(x, y, z);
+        markDirty(MetaField.SCALE);
         return self();
     }
 
     public T setScale(Vector3F scale) {
         this.scale = new Vector3f(scale.x, scale.y, scale.z);
+        markDirty(MetaField.SCALE);
         return self();
     }
 
@@ -725,6 +1282,7 @@ public abstract class Hologram<T extends Hologram<T>> {
      */
     public T setIsInvisible(boolean isInvisible) {
         this.isInvisible = isInvisible;
+        markDirty(MetaField.ENTITY_FLAGS);
         return self();
     }
 
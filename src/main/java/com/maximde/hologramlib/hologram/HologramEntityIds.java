@@ -0,0 +1,88 @@
+package com.maximde.hologramlib.hologram;
+
+import com.github.retrooper.packetevents.event.PacketSendEvent;
+import com.github.retrooper.packetevents.netty.buffer.ByteBufHelper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bitset of the entity ids of all registered holograms.
+ * Packet listeners use it to reject packets of other entities with a single bit test,
+ * before a wrapper is created or the manager is looked up.
+ */
+public final class HologramEntityIds {
+
+    /**
+     * Replaced by a larger copy when an id does not fit, readers never lock
+     */
+    private static volatile AtomicLongArray words = new AtomicLongArray(64);
+
+    private HologramEntityIds() {
+
+    }
+
+    public static synchronized void add(int entityId) {
+        if (entityId < 0) return;
+        int word = entityId >>> 6;
+        AtomicLongArray current = words;
+        if (word >= current.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+            for (int i = 0; i < current.length(); i++) grown.set(i, current.get(i));
+            words = current = grown;
+        }
+        long bit = 1L << entityId;
+        current.getAndUpdate(word, value -> value | bit);
+    }
+
+    public static synchronized void remove(int entityId) {
+        if (entityId < 0) return;
+        int word = entityId >>> 6;
+        AtomicLongArray current = words;
+        if (word >= current.length()) return;
+        long bit = 1L << entityId;
+        current.getAndUpdate(word, value -> value & ~bit);
+    }
+
+    public static synchronized void clear() {
+        words = new AtomicLongArray(64);
+    }
+
+    public static boolean contains(int entityId) {
+        if (entityId < 0) return false;
+        int word = entityId >>> 6;
+        AtomicLongArray current = words;
+        return word < current.length() && (current.get(word) & (1L << entityId)) != 0;
+    }
+
+    /**
+     * Checks if the entity packet belongs to a hologram, by reading the leading entity id from the raw buffer.
+     * Only works for packets which start with the entity id, like ENTITY_METADATA.
+     */
+    public static boolean isHologramPacket(PacketSendEvent event) {
+        return isHologramPacket(event.getByteBuf());
+    }
+
+    /**
+     * @param buffer The raw packet buffer, positioned at the entity id. The reader index is restored afterwards.
+     */
+    static boolean isHologramPacket(Object buffer) {
+        int readerIndex = ByteBufHelper.readerIndex(buffer);
+        try {
+            return contains(readVarInt(buffer));
+        } finally {
+            ByteBufHelper.readerIndex(buffer, readerIndex);
+        }
+    }
+
+    private static int readVarInt(Object buffer) {
+        int value = 0;
+        int position = 0;
+        byte current;
+        do {
+            current = ByteBufHelper.readByte(buffer);
+            value |= (current & 0x7F) << position;
+            position += 7;
+        } while ((current & 0x80) != 0 && position < 35);
+        return value;
+    }
+}
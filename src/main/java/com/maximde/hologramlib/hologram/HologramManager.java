@@ -4,12 +4,15 @@ import com.maximde.hologramlib.hologram.custom.LeaderboardHologram;
 import com.maximde.hologramlib.hologram.custom.PagedLeaderboard;
 import com.maximde.hologramlib.hologram.custom.SwitchableLeaderboard;
 import com.maximde.hologramlib.utils.BukkitTasks;
+import com.maximde.hologramlib.utils.PacketBundle;
 import com.maximde.hologramlib.utils.TaskHandle;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -25,6 +28,23 @@ public class HologramManager {
     private final Map<String, InteractionBox> interactionBoxesById = new ConcurrentHashMap<>();
     private final Map<Integer, InteractionBox> interactionBoxesByEntityId = new ConcurrentHashMap<>();
 
+    /**
+     * Shared engine which updates the viewers of all spawned holograms and interaction boxes
+     */
+    @Getter
+    private final VisibilityEngine visibilityEngine = new VisibilityEngine();
+
+    /**
+     * Shared timer of all keyframe animations
+     */
+    @Getter
+    private final TransformAnimator transformAnimator = new TransformAnimator();
+
+    /**
+     * Shared timer which keeps the placeholders of text holograms up to date
+     */
+    @Getter
+    private final PlaceholderRefresher placeholderRefresher = new PlaceholderRefresher();
 
 
     public interface Events {
@@ -138,18 +158,23 @@ public class HologramManager {
 
         registerEventHandler(pagedLeaderboard);
 
-        for (LeaderboardHologram page : pagedLeaderboard.getPages()) {
-            page.setFixedRotation();
-            spawn(page, location);
-        }
+        register(pagedLeaderboard.getLeftArrow());
+        register(pagedLeaderboard.getRightArrow());
+        register(pagedLeaderboard.getLeftInteraction());
+        register(pagedLeaderboard.getRightInteraction());
+
+        BukkitTasks.runTask(() -> spawnBundled(location, () -> {
+            for (LeaderboardHologram page : pagedLeaderboard.getPages()) {
+                page.setFixedRotation();
+                spawn(page, location);
+            }
 
-        spawn(pagedLeaderboard.getLeftArrow(), location);
-        spawn(pagedLeaderboard.getRightArrow(), location);
+            spawnNow(pagedLeaderboard.getLeftArrow(), location, true);
+            spawnNow(pagedLeaderboard.getRightArrow(), location, true);
 
-        spawn(pagedLeaderboard.getLeftInteraction(), location);
-        spawn(pagedLeaderboard.getRightInteraction(), location);
+            spawnNow(pagedLeaderboard.getLeftInteraction(), location, true);
+            spawnNow(pagedLeaderboard.getRightInteraction(), location, true);
 
-        BukkitTasks.runTask(() -> {
             try {
                 pagedLeaderboard.init(location);
             } catch (Exception e) {
@@ -157,7 +182,7 @@ public class HologramManager {
                 Bukkit.getLogger().warning("Error spawning PagedLeaderboard with id: " + pagedLeaderboard.getBaseId());
                 e.printStackTrace();
             }
-        });
+        }), location);
 
         return pagedLeaderboard;
     }
@@ -223,12 +248,39 @@ public class HologramManager {
         return Optional.ofNullable(entityIdToHologramMap.get(entityId));
     }
 
+    /**
+     * Gets all spawned holograms within the radius around the location.
+     * Uses the spatial index of the visibility engine, so only nearby holograms are checked.
+     *
+     * @param location The center of the search
+     * @param radius The radius in blocks
+     * @return The holograms in range
+     */
+    public List<Hologram<?>> getHologramsNear(Location location, double radius) {
+        List<Hologram<?>> holograms = new ArrayList<>();
+        visibilityEngine.getIndex().forEachNear(location, radius, target -> {
+            if (target instanceof Hologram.Internal internal) holograms.add(internal.getHologram());
+        });
+        return holograms;
+    }
+
+    /**
+     * Gets all spawned interaction boxes within the radius around the location.
+     */
+    public List<InteractionBox> getInteractionBoxesNear(Location location, double radius) {
+        List<InteractionBox> interactionBoxes = new ArrayList<>();
+        visibilityEngine.getIndex().forEachNear(location, radius, target -> {
+            if (target instanceof InteractionBox.Internal internal) interactionBoxes.add(internal.getInteractionBox());
+        });
+        return interactionBoxes;
+    }
+
     public void spawn(LeaderboardHologram leaderboardHologram, Location location) {
         spawn(leaderboardHologram, location, true);
     }
 
     public void spawn(LeaderboardHologram leaderboardHologram, Location location, boolean ignorePitchYaw) {
-        leaderboardHologram.spawn(location, ignorePitchYaw);
+        spawnBundled(location, () -> leaderboardHologram.spawn(location, ignorePitchYaw));
         for (TextHologram textHologram : leaderboardHologram.getAllTextHolograms()) {
             register(textHologram);
         }
@@ -237,10 +289,56 @@ public class HologramManager {
         }
     }
 
+    /**
+     * Runs the spawner and sends everything it produces for a nearby player inside a single bundle,
+     * so all parts of a composite hologram show up in the same frame.
+     * Has to be called from the thread owning the location, the parts have to be spawned synchronously.
+     */
+    public void spawnBundled(Location location, Runnable spawner) {
+        World world = location.getWorld();
+        if (world == null) {
+            spawner.run();
+            return;
+        }
+
+        double radius = Math.max(this.visibilityEngine.getMaxRenderDistance(), 250);
+        List<Player> players = new ArrayList<>();
+        for (Player player : this.visibilityEngine.getPlayers(world)) {
+            Location playerLocation = this.visibilityEngine.getPlayerLocation(player);
+            if (playerLocation != null && playerLocation.distanceSquared(location) <= radius * radius) players.add(player);
+        }
+        PacketBundle.run(players, spawner);
+    }
+
+    /**
+     * Spawns and updates the hologram and its interaction box on the current thread
+     */
+    private void spawnNow(Hologram<?> hologram, Location location, boolean ignorePitchYaw) {
+        try {
+            hologram.getInternalAccess().spawn(location, ignorePitchYaw).updateNow();
+            InteractionBox interactionBox = hologram.getInteractionBox();
+            if (interactionBox != null && !interactionBoxesById.containsKey(interactionBox.getId())) register(interactionBox);
+            spawnNow(interactionBox, location, ignorePitchYaw);
+        } catch (Exception e) {
+            Bukkit.getLogger().warning("An error occurred while trying to spawn hologram with id: " + hologram.id);
+            e.printStackTrace();
+        }
+    }
+
+    private void spawnNow(InteractionBox interactionBox, Location location, boolean ignorePitchYaw) {
+        if (interactionBox == null) return;
+        try {
+            interactionBox.getInternalAccess().spawn(location, ignorePitchYaw).update();
+        } catch (Exception e) {
+            Bukkit.getLogger().warning("Error spawning interaction box: " + interactionBox.getId());
+            e.printStackTrace();
+        }
+    }
+
     public <H extends Hologram<H>> H spawn(H hologram, Location location) {
         this.register(hologram);
         BukkitTasks.runTask(() -> {
-            hologram.getInternalAccess().spawn(location, true).update();
+            hologram.getInternalAccess().spawn(location, true).updateNow();
             spawn(hologram.getInteractionBox(), location);
         });
 
@@ -251,7 +349,7 @@ public class HologramManager {
         this.register(hologram);
         BukkitTasks.runTask(() -> {
             try {
-                hologram.getInternalAccess().spawn(location, ignorePitchYaw).update();
+                hologram.getInternalAccess().spawn(location, ignorePitchYaw).updateNow();
                 spawn(hologram.getInteractionBox(), location, ignorePitchYaw);
             } catch (Exception e) {
                 Bukkit.getLogger().warning("An error occurred while trying to spawn hologram with id: " + hologram.id);
@@ -262,6 +360,38 @@ public class HologramManager {
         return hologram;
     }
 
+    /**
+     * Teleports many holograms (and their interaction boxes) at once.
+     * All positions are set first and the spatial index is updated in a single pass.
+     * The movement packets are sent in one bundle per viewer, so a flush of the packet queue
+     * cannot run in the middle and show only a part of the holograms moved.
+     */
+    public void teleportAll(Map<? extends Hologram<?>, Location> locations) {
+        Set<Player> viewers = new HashSet<>();
+        locations.keySet().forEach(hologram -> viewers.addAll(hologram.getViewers()));
+
+        List<VisibilityTarget> moved = new ArrayList<>(locations.size());
+        PacketBundle.run(viewers, () -> locations.forEach((hologram, location) -> {
+            hologram.getInternalAccess().moveTo(location);
+            moved.add(hologram.getInternalAccess());
+            if (hologram.getInteractionBox() != null) moved.add(hologram.getInteractionBox().getInternalAccess());
+        }));
+        this.visibilityEngine.relocateAll(moved);
+    }
+
+    /**
+     * Moves all holograms by the same offset, for example a whole leaderboard with its arrows
+     * @see #teleportAll(Map)
+     */
+    public void translate(Collection<? extends Hologram<?>> holograms, Vector offset) {
+        Map<Hologram<?>, Location> locations = new LinkedHashMap<>();
+        for (Hologram<?> hologram : holograms) {
+            Location location = hologram.getLocation();
+            if (location != null) locations.put(hologram, location.clone().add(offset));
+        }
+        teleportAll(locations);
+    }
+
     public void attach(Hologram<?> hologram, int entityID) {
         hologram.attach(entityID);
     }
@@ -276,6 +406,7 @@ public class HologramManager {
         }
         hologramsMap.put(hologram.getId(), hologram);
         entityIdToHologramMap.put(hologram.getEntityID(), hologram);
+        HologramEntityIds.add(hologram.getEntityID());
         return true;
     }
 
@@ -287,7 +418,12 @@ public class HologramManager {
         Hologram<?> hologram = hologramsMap.remove(id);
         if (hologram != null) {
             entityIdToHologramMap.remove(hologram.getEntityID());
-            if (hologram instanceof TextHologram textHologram) cancelAnimation(textHologram);
+            HologramEntityIds.remove(hologram.getEntityID());
+            if (hologram instanceof TextHologram textHologram) {
+                cancelAnimation(textHologram);
+                placeholderRefresher.remove(textHologram);
+            }
+            transformAnimator.stop(hologram);
             hologram.getInternalAccess().kill();
             removeInteractionBox(hologram.getInteractionBox());
 
@@ -296,18 +432,33 @@ public class HologramManager {
         return false;
     }
 
+    /**
+     * Removes the player from the viewers of all holograms and interaction boxes, called when the player leaves.
+     * The blacklists are kept, so they still apply when the player joins again.
+     */
+    public void forgetViewer(Player player) {
+        hologramsMap.values().forEach(hologram -> hologram.getInternalAccess().forgetViewer(player));
+        interactionBoxesById.values().forEach(interactionBox -> interactionBox.getInternalAccess().forgetViewer(player));
+    }
+
     public void removeAll() {
         hologramsMap.values().forEach(hologram -> {
-            if (hologram instanceof TextHologram textHologram) cancelAnimation(textHologram);
+            if (hologram instanceof TextHologram textHologram) {
+                cancelAnimation(textHologram);
+                placeholderRefresher.remove(textHologram);
+            }
+            transformAnimator.stop(hologram);
             hologram.getInternalAccess().kill();
         });
 
 
         hologramsMap.clear();
         entityIdToHologramMap.clear();
+        HologramEntityIds.clear();
     }
 
     public boolean remove(LeaderboardHologram leaderboardHologram) {
+        leaderboardHologram.unregister();
         boolean success = true;
 
         for (TextHologram textHologram : leaderboardHologram.getAllTextHolograms()) {
@@ -331,6 +482,17 @@ public class HologramManager {
         Optional.ofNullable(hologramAnimations.remove(hologram)).ifPresent(TaskHandle::cancel);
     }
 
+    /**
+     * Plays the keyframe animation on the hologram, see {@link TransformAnimation}
+     */
+    public void applyAnimation(Hologram<?> hologram, TransformAnimation transformAnimation) {
+        transformAnimator.play(hologram, transformAnimation);
+    }
+
+    public void cancelTransformAnimation(Hologram<?> hologram) {
+        transformAnimator.stop(hologram);
+    }
+
     private TaskHandle animateHologram(TextHologram hologram, TextAnimation textAnimation) {
         return BukkitTasks.runTaskTimerAsync(() -> {
             if (textAnimation.getTextFrames().isEmpty()) return;
@@ -381,24 +543,33 @@ public class HologramManager {
 
         manager.registerEventHandler(switchableLeaderboard);
 
-        for (SwitchableLeaderboard.StatMode statMode : switchableLeaderboard.getStatModes().values()) {
-            for (LeaderboardHologram page : statMode.getPages()) {
-                page.setFixedRotation();
-                manager.spawn(page, location);
-            }
+        manager.register(switchableLeaderboard.getLeftArrow());
+        manager.register(switchableLeaderboard.getRightArrow());
+        manager.register(switchableLeaderboard.getLeftInteraction());
+        manager.register(switchableLeaderboard.getRightInteraction());
+        for (SwitchableLeaderboard.StateButton button : switchableLeaderboard.getStateButtons()) {
+            manager.register(button.getHologram());
+            manager.register(button.getInteraction());
         }
 
-        manager.spawn(switchableLeaderboard.getLeftArrow(), location);
-        manager.spawn(switchableLeaderboard.getRightArrow(), location);
-        manager.spawn(switchableLeaderboard.getLeftInteraction(), location);
-        manager.spawn(switchableLeaderboard.getRightInteraction(), location);
+        BukkitTasks.runTask(() -> manager.spawnBundled(location, () -> {
+            for (SwitchableLeaderboard.StatMode statMode : switchableLeaderboard.getStatModes().values()) {
+                for (LeaderboardHologram page : statMode.getPages()) {
+                    page.setFixedRotation();
+                    manager.spawn(page, location);
+                }
+            }
 
-        for (SwitchableLeaderboard.StateButton button : switchableLeaderboard.getStateButtons()) {
-            manager.spawn(button.getHologram(), location);
-            manager.spawn(button.getInteraction(), location);
-        }
+            manager.spawnNow(switchableLeaderboard.getLeftArrow(), location, true);
+            manager.spawnNow(switchableLeaderboard.getRightArrow(), location, true);
+            manager.spawnNow(switchableLeaderboard.getLeftInteraction(), location, true);
+            manager.spawnNow(switchableLeaderboard.getRightInteraction(), location, true);
+
+            for (SwitchableLeaderboard.StateButton button : switchableLeaderboard.getStateButtons()) {
+                manager.spawnNow(button.getHologram(), location, true);
+                manager.spawnNow(button.getInteraction(), location, true);
+            }
 
-        BukkitTasks.runTask(() -> {
             try {
                 switchableLeaderboard.init(location);
             } catch (Exception e) {
@@ -406,7 +577,7 @@ public class HologramManager {
                 Bukkit.getLogger().warning("Error spawning SwitchableLeaderboard with id: " + switchableLeaderboard.getBaseId());
                 e.printStackTrace();
             }
-        });
+        }), location);
 
         return switchableLeaderboard;
     }
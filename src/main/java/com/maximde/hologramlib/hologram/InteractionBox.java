@@ -7,6 +7,7 @@ import com.github.retrooper.packetevents.wrapper.PacketWrapper;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerSetPassengers;
 import com.maximde.hologramlib.HologramLib;
 import com.maximde.hologramlib.utils.BukkitTasks;
+import com.maximde.hologramlib.utils.PacketQueue;
 import com.maximde.hologramlib.utils.TaskHandle;
 import com.maximde.hologramlib.utils.Vector3F;
 import io.github.retrooper.packetevents.util.SpigotConversionUtil;
@@ -23,7 +24,9 @@ import org.jetbrains.annotations.ApiStatus;
 import org.jspecify.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 @SuppressWarnings({"unused", "UnusedReturnValue"})
@@ -42,6 +45,23 @@ public class InteractionBox {
     @Getter @Accessors(chain = true)
     protected double maxPlayerRenderDistanceSquared = 62500;
 
+    /**
+     * Squared distance at which an existing viewer gets removed again.
+     * Values smaller than {@link #maxPlayerRenderDistanceSquared} are ignored,
+     * a bigger value creates a band where players are neither added nor removed.
+     */
+    protected double despawnDistanceSquared = 62500;
+
+    /**
+     * Counts how often a viewer was kept because it was inside the despawn band
+     */
+    private final LongAdder suppressedViewerToggles = new LongAdder();
+
+    /**
+     * Viewers which are currently only kept because of the despawn band
+     */
+    private final Set<UUID> bandViewers = ConcurrentHashMap.newKeySet();
+
     @Getter @Accessors(chain = true)
     protected float width = 1.0f;
 
@@ -85,10 +105,22 @@ public class InteractionBox {
     protected @Nullable Integer attachedEntityId;
 
     /**
-     * Players which will not be automatically added as viewers no matter which render mode
+     * Player resolved from the attached entity id, null if the entity is not a player
      */
-    @Getter
-    private final List<Player> blacklistedViewers = new ArrayList<>();
+    private volatile @Nullable Player attachedPlayer;
+
+    private @Nullable VisibilityEngine visibilityEngine;
+
+    /**
+     * Hologram this interaction belongs to, the interaction is only shown to players the per player limit allows the hologram for
+     */
+    private @Nullable VisibilityTarget owner;
+
+    /**
+     * Players which will not be automatically added as viewers no matter which render mode.
+     * Stored by UUID, so the blacklist still applies after the player rejoins.
+     */
+    private final Set<UUID> blacklistedViewers = ConcurrentHashMap.newKeySet();
 
     @FunctionalInterface
     public interface OnInteract {
@@ -97,10 +129,16 @@ public class InteractionBox {
 
     private final OnInteract onInteract;
 
-    public interface Internal {
+    public interface Internal extends VisibilityTarget {
         InteractionBox spawn(Location location, boolean ignorePitchYaw);
         void kill();
         void setLocation(Location location);
+        /**
+         * Moves the entity without updating the visibility engine, used by batch teleports
+         */
+        void moveTo(Location location);
+        InteractionBox getInteractionBox();
+        void forgetViewer(Player player);
     }
 
     public InteractionBox(String id, OnInteract onInteract) {
@@ -111,17 +149,42 @@ public class InteractionBox {
         this.onInteract = onInteract;
         this.entityType = EntityTypes.INTERACTION;
         validateId(id);
-        this.entity = new WrapperEntity(entityType);
+        this.entity = new QueuedEntity(entityType, this::rankViewer);
         this.id = id;
         this.entityID = entity.getEntityId();
         this.renderMode = renderMode;
         this.internalAccess = new InternalSetters();
-        startRunnable();
     }
 
-    private void startRunnable() {
-        if (task != null) return;
-        task = BukkitTasks.runTaskTimerAsync(this::updateAffectedPlayers, 20L, updateTaskPeriod);
+    /**
+     * Registers this interaction at the shared visibility engine.
+     * Interactions are only tracked while they are spawned.
+     */
+    private void startTracking() {
+        if (task != null && !task.isCancelled()) return;
+        HologramLib.getManager().ifPresent(manager -> {
+            this.visibilityEngine = manager.getVisibilityEngine();
+            this.task = this.visibilityEngine.track(this.internalAccess);
+        });
+    }
+
+    private void relocate() {
+        if (this.visibilityEngine != null) this.visibilityEngine.relocate(this.internalAccess);
+    }
+
+    private void renderDistanceChanged() {
+        if (this.visibilityEngine != null) this.visibilityEngine.renderDistanceChanged(this.internalAccess);
+    }
+
+    /**
+     * Moves the entity, sending relative moves to the viewers where possible
+     */
+    private void move(Location location) {
+        if (this.entity instanceof QueuedEntity queuedEntity) {
+            queuedEntity.move(SpigotConversionUtil.fromBukkitLocation(location));
+        } else {
+            this.entity.teleport(SpigotConversionUtil.fromBukkitLocation(location));
+        }
     }
 
     private class InternalSetters implements Internal {
@@ -141,10 +204,82 @@ public class InteractionBox {
         public void setLocation(Location location) {
             InteractionBox.this.setLocation(location);
         }
+
+        @Override
+        public void moveTo(Location location) {
+            InteractionBox.this.location = location;
+            InteractionBox.this.move(location);
+        }
+
+        @Override
+        public InteractionBox getInteractionBox() {
+            return InteractionBox.this;
+        }
+
+        @Override
+        public void forgetViewer(Player player) {
+            InteractionBox.this.forgetViewer(player);
+        }
+
+        @Override
+        public void updateAffectedPlayers() {
+            InteractionBox.this.updateAffectedPlayers();
+        }
+
+        @Override
+        public void updateAffectedPlayers(Collection<? extends Player> candidates) {
+            InteractionBox.this.updateAffectedPlayers(candidates);
+        }
+
+        @Override
+        public void updateViewer(Player player, Location playerLocation) {
+            InteractionBox.this.updateViewer(player, playerLocation);
+        }
+
+        @Override
+        public boolean isEligible(Player player) {
+            return InteractionBox.this.isEligible(player);
+        }
+
+        @Override
+        public double getMaxPlayerRenderDistanceSquared() {
+            return InteractionBox.this.maxPlayerRenderDistanceSquared;
+        }
+
+        @Override
+        public double getDespawnDistanceSquared() {
+            return InteractionBox.this.getDespawnDistanceSquared();
+        }
+
+        @Override
+        public Location getLocation() {
+            return InteractionBox.this.location;
+        }
+
+        @Override
+        public long getUpdateTaskPeriod() {
+            return InteractionBox.this.updateTaskPeriod;
+        }
+
+        @Override
+        public boolean isDead() {
+            return InteractionBox.this.dead;
+        }
+
+        @Override
+        public int getPriority() {
+            return 0;
+        }
+
+        @Override
+        public boolean isCapped() {
+            return false;
+        }
     }
 
     private void setLocation(Location location) {
         this.location = location;
+        relocate();
     }
 
     public void show(Player player) {
@@ -158,11 +293,11 @@ public class InteractionBox {
     }
 
     public void addToViewerBlacklist(Player player) {
-        this.blacklistedViewers.add(player);
+        this.blacklistedViewers.add(player.getUniqueId());
     }
 
     public void removeFromViewerBlacklist(Player player) {
-        this.blacklistedViewers.remove(player);
+        this.blacklistedViewers.remove(player.getUniqueId());
     }
 
     /**
@@ -188,13 +323,15 @@ public class InteractionBox {
     @Deprecated
     public void kill() {
         this.entity.remove();
-        this.task.cancel();
+        if (this.entity instanceof QueuedEntity queuedEntity) queuedEntity.resetMoves();
+        if (this.task != null) this.task.cancel();
         this.dead = true;
     }
 
     public InteractionBox teleport(Location newLocation) {
         this.location = newLocation;
-        this.entity.teleport(SpigotConversionUtil.fromBukkitLocation(newLocation));
+        move(newLocation);
+        relocate();
         return this;
     }
 
@@ -206,21 +343,37 @@ public class InteractionBox {
         return meta;
     }
 
+    /**
+     * Updates which players should be able to see this interaction based on the render mode.
+     * Checks every player in the interaction's world.
+     */
+    private void updateAffectedPlayers() {
+        World world = this.location == null ? null : this.location.getWorld();
+        if (world == null) {
+            this.updateAffectedPlayers(Collections.<Player>emptyList());
+        } else {
+            this.updateAffectedPlayers(this.visibilityEngine == null ? world.getPlayers() : this.visibilityEngine.getPlayers(world));
+        }
+    }
+
     /**
      * Updates which players should be able to see this interaction based on the render mode.
      * For ALL mode, adds all online players.
      * For VIEWER_LIST mode, only uses manually added viewers.
      * Removes viewers who are too far away or in different worlds.
+     *
+     * @param candidates Players which are close enough to possibly see the interaction,
+     *                   every viewer which is not part of it gets removed
      */
-    private void updateAffectedPlayers() {
+    private void updateAffectedPlayers(Collection<? extends Player> candidates) {
         if(this.dead) return;
 
         if(renderMode == RenderMode.VIEWER_LIST) {
             if (attachedEntityId != null) {
-                Player attachedPlayer = getPlayerByEntityId(attachedEntityId);
+                Player attachedPlayer = getAttachedPlayer();
                 if (attachedPlayer != null && attachedPlayer.isOnline()) {
-                    Location playerLocation = attachedPlayer.getLocation();
-                    if (playerLocation.getWorld() != null) {
+                    Location playerLocation = locate(attachedPlayer);
+                    if (playerLocation != null && playerLocation.getWorld() != null) {
                         this.teleport(playerLocation);
                     }
                 }
@@ -246,18 +399,16 @@ public class InteractionBox {
         World world = this.location.getWorld();
 
         if (world != null && (this.renderMode == RenderMode.ALL || this.renderMode == RenderMode.NEARBY || this.renderMode == RenderMode.NOT_ATTACHED_PLAYER)) {
-            List<Player> viewersToKeep = new ArrayList<>(world.getPlayers()).stream()
+            List<Player> viewersToKeep = new ArrayList<Player>(candidates).stream()
                     .filter(Objects::nonNull)
-                    .filter(player ->
-                            player.isOnline() &&
-                                    !this.blacklistedViewers.contains(player) &&
-                                    Objects.equals(player.getLocation().getWorld(), world) &&
-                                    player.getLocation().distanceSquared(this.location) <= this.maxPlayerRenderDistanceSquared
-                    )
+                    .filter(player -> {
+                        Location playerLocation = locate(player);
+                        return playerLocation != null && isInRange(player, playerLocation);
+                    })
                     .toList();
 
             if (this.renderMode == RenderMode.NOT_ATTACHED_PLAYER && attachedEntityId != null) {
-                Player attachedPlayer = getPlayerByEntityId(attachedEntityId);
+                Player attachedPlayer = getAttachedPlayer();
                 if (attachedPlayer != null) {
                     viewersToKeep = viewersToKeep.stream()
                             .filter(player -> !player.equals(attachedPlayer))
@@ -265,19 +416,103 @@ public class InteractionBox {
                 }
             }
 
-            Set<UUID> viewersToRemove = new HashSet<>(this.entity.getViewers());
-            viewersToKeep.forEach(player -> viewersToRemove.remove(player.getUniqueId()));
+            ViewerSlots.Diff diff = ((QueuedEntity) this.entity).diffViewers(viewersToKeep);
+            diff.removed().forEach(this::removeEntityViewer);
+            diff.added().forEach(this::addViewer);
+        }
+    }
+
+    /**
+     * Checks the render mode, the blacklist and the attached player, ignoring the range
+     */
+    private boolean isEligible(Player player) {
+        if (this.renderMode != RenderMode.ALL && this.renderMode != RenderMode.NEARBY && this.renderMode != RenderMode.NOT_ATTACHED_PLAYER) return false;
+        if (this.blacklistedViewers.contains(player.getUniqueId())) return false;
+        return !(this.renderMode == RenderMode.NOT_ATTACHED_PLAYER && attachedEntityId != null && player.getEntityId() == attachedEntityId);
+    }
+
+    /**
+     * Adds or removes the player as viewer based on the given player position.
+     * Used to react on player movement without recalculating all viewers.
+     */
+    private void updateViewer(Player player, Location playerLocation) {
+        if (this.dead || this.location == null) return;
+        if (this.renderMode != RenderMode.ALL && this.renderMode != RenderMode.NEARBY && this.renderMode != RenderMode.NOT_ATTACHED_PLAYER) return;
+
+        boolean visible = isInRange(player, playerLocation) &&
+                !(this.renderMode == RenderMode.NOT_ATTACHED_PLAYER && attachedEntityId != null && player.getEntityId() == attachedEntityId);
+
+        boolean viewer = this.entity.hasViewer(player.getUniqueId());
+        if (visible && !viewer) {
+            addViewer(player);
+        } else if (!visible && viewer) {
+            removeViewer(player);
+        }
+    }
+
+    /**
+     * @return The location of the player which is safe to read from the current thread
+     */
+    private @Nullable Location locate(Player player) {
+        return this.visibilityEngine == null ? player.getLocation() : this.visibilityEngine.getPlayerLocation(player);
+    }
 
-            viewersToRemove.forEach(this.entity::removeViewer);
-            this.addAllViewers(viewersToKeep);
+    /**
+     * Ranks the updates of this interaction for a viewer by distance, see {@link Hologram}
+     */
+    private double rankViewer(UUID viewer) {
+        Player player = PlayerIndex.get(viewer);
+        Location playerLocation = player == null ? null : locate(player);
+        Location location = this.location;
+        if (playerLocation == null || location == null || playerLocation.getWorld() != location.getWorld()) {
+            return -Math.sqrt(getDespawnDistanceSquared());
         }
+        return -playerLocation.distance(location);
+    }
+
+    /**
+     * Checks if the player is close enough to see the interaction from the given position, ignoring the render mode.
+     */
+    private boolean isInRange(Player player, Location playerLocation) {
+        World world = this.location.getWorld();
+        if (!player.isOnline() || this.blacklistedViewers.contains(player.getUniqueId()) || world == null ||
+                !Objects.equals(playerLocation.getWorld(), world)) return false;
+
+        UUID uuid = player.getUniqueId();
+        double distanceSquared = playerLocation.distanceSquared(this.location);
+        if (distanceSquared <= this.maxPlayerRenderDistanceSquared) {
+            this.bandViewers.remove(uuid);
+            return isAllowedByOwner(player, playerLocation);
+        }
+        if (distanceSquared > getDespawnDistanceSquared() || !this.entity.hasViewer(uuid)) {
+            this.bandViewers.remove(uuid);
+            return false;
+        }
+
+        // Only count the moment the viewer enters the band, not every sweep it stays there
+        if (this.bandViewers.add(uuid)) {
+            this.suppressedViewerToggles.increment();
+            if (this.visibilityEngine != null) this.visibilityEngine.recordSuppressedToggle();
+        }
+        return isAllowedByOwner(player, playerLocation);
+    }
+
+    /**
+     * A hologram dropped by the per player limit must not stay clickable through its interaction
+     */
+    private boolean isAllowedByOwner(Player player, Location playerLocation) {
+        VisibilityTarget owner = this.owner;
+        return owner == null || this.visibilityEngine == null || this.visibilityEngine.isAllowed(owner, player, playerLocation);
+    }
+
+    void setOwner(@Nullable VisibilityTarget owner) {
+        this.owner = owner;
     }
 
     protected void sendPacket(PacketWrapper<?> packet, List<Player> players) {
         if (this.renderMode == RenderMode.NONE) return;
 
-        players.forEach(player ->
-                HologramLib.getPlayerManager().sendPacket(player, packet));
+        players.forEach(player -> PacketQueue.enqueue(player, packet));
     }
 
     private void spawn(Location location, boolean ignorePitchYaw) {
@@ -286,8 +521,11 @@ public class InteractionBox {
             this.location.setPitch(0);
             this.location.setYaw(0);
         }
+        if (this.entity instanceof QueuedEntity queuedEntity) queuedEntity.resetMoves();
         this.entity.spawn(SpigotConversionUtil.fromBukkitLocation(this.location));
         this.dead = false;
+        startTracking();
+        relocate();
     }
 
     private void spawn(Location location) {
@@ -307,13 +545,23 @@ public class InteractionBox {
      * @param entityId The entity ID to search for
      * @return The player if found, null otherwise
      */
-    private Player getPlayerByEntityId(int entityId) {
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            if (player.getEntityId() == entityId) {
-                return player;
-            }
+    private @Nullable Player getPlayerByEntityId(int entityId) {
+        return PlayerIndex.getByEntityId(entityId);
+    }
+
+    /**
+     * Returns the player this entity is attached to.
+     * The player is resolved once when attaching and only looked up again if it went offline.
+     */
+    private @Nullable Player getAttachedPlayer() {
+        Integer entityId = this.attachedEntityId;
+        if (entityId == null) return null;
+        Player player = this.attachedPlayer;
+        if (player == null || !player.isOnline() || player.getEntityId() != entityId) {
+            player = getPlayerByEntityId(entityId);
+            this.attachedPlayer = player;
         }
-        return null;
+        return player;
     }
 
     /**
@@ -329,9 +577,9 @@ public class InteractionBox {
     @ApiStatus.Experimental
     public void attach(int entityId) {
         attachedEntityId = entityId;
+        attachedPlayer = getPlayerByEntityId(entityId);
 
         if (renderMode == RenderMode.NOT_ATTACHED_PLAYER) {
-            Player attachedPlayer = getPlayerByEntityId(entityId);
             if (attachedPlayer != null) {
                 removeViewer(attachedPlayer);
             }
@@ -348,7 +596,7 @@ public class InteractionBox {
     public void detach() {
         if (attachedEntityId != null) {
             if (renderMode == RenderMode.NOT_ATTACHED_PLAYER) {
-                Player previouslyAttachedPlayer = getPlayerByEntityId(attachedEntityId);
+                Player previouslyAttachedPlayer = getAttachedPlayer();
                 if (previouslyAttachedPlayer != null) {
                     addViewer(previouslyAttachedPlayer);
                 }
@@ -357,6 +605,7 @@ public class InteractionBox {
             WrapperPlayServerSetPassengers detachPacket = new WrapperPlayServerSetPassengers(attachedEntityId, removeElement(PassengerManager.getPassengers(attachedEntityId), this.entityID));
             BukkitTasks.runTaskAsync(() -> this.entity.sendPacketsToViewers(detachPacket));
             attachedEntityId = null;
+            attachedPlayer = null;
         }
     }
 
@@ -404,9 +653,53 @@ public class InteractionBox {
 
     public InteractionBox setMaxPlayerRenderDistanceSquared(double maxPlayerRenderDistanceSquared) {
         this.maxPlayerRenderDistanceSquared = maxPlayerRenderDistanceSquared;
+        renderDistanceChanged();
+        return this;
+    }
+
+    /**
+     * Sets the squared distance at which existing viewers get removed.
+     * Has no effect if it is smaller than the max player render distance.
+     */
+    public InteractionBox setDespawnDistanceSquared(double despawnDistanceSquared) {
+        this.despawnDistanceSquared = despawnDistanceSquared;
+        renderDistanceChanged();
+        return this;
+    }
+
+    /**
+     * Sets separate distances for adding and removing viewers.
+     * Players start seeing the entity when they get closer than spawnDistance
+     * and only stop seeing it when they are further away than despawnDistance.
+     * This prevents spawn and destroy packets for players standing right at the border.
+     *
+     * @param spawnDistance Distance in blocks at which players are added as viewers
+     * @param despawnDistance Distance in blocks at which viewers are removed, has to be at least spawnDistance
+     */
+    public InteractionBox setRenderDistance(double spawnDistance, double despawnDistance) {
+        if (despawnDistance < spawnDistance) {
+            throw new IllegalArgumentException("The despawn distance cannot be smaller than the spawn distance");
+        }
+        this.maxPlayerRenderDistanceSquared = spawnDistance * spawnDistance;
+        this.despawnDistanceSquared = despawnDistance * despawnDistance;
+        renderDistanceChanged();
         return this;
     }
 
+    /**
+     * @return The squared distance at which viewers are removed, never smaller than the max player render distance
+     */
+    public double getDespawnDistanceSquared() {
+        return Math.max(this.despawnDistanceSquared, this.maxPlayerRenderDistanceSquared);
+    }
+
+    /**
+     * @return How often a viewer toggle was suppressed by the despawn band
+     */
+    public long getSuppressedViewerToggles() {
+        return this.suppressedViewerToggles.sum();
+    }
+
     public InteractionBox setWidth(float width) {
         this.width = width;
         return this;
@@ -445,10 +738,47 @@ public class InteractionBox {
     }
 
     public InteractionBox removeViewer(Player player) {
-        this.entity.removeViewer(player.getUniqueId());
+        removeEntityViewer(player.getUniqueId());
         return this;
     }
 
+    private void removeEntityViewer(UUID player) {
+        this.entity.removeViewer(player);
+        this.bandViewers.remove(player);
+    }
+
+    /**
+     * Forgets the viewer state of a player which leaves the server, the blacklist is kept
+     */
+    private void forgetViewer(Player player) {
+        removeViewer(player);
+    }
+
+    /**
+     * Returns a snapshot of the blacklisted players which are online, changing it does not change the blacklist.
+     * Use {@link #addToViewerBlacklist(Player)} and {@link #removeFromViewerBlacklist(Player)} instead.
+     *
+     * @return The online players which will not be automatically added as viewers
+     */
+    public List<Player> getBlacklistedViewers() {
+        List<Player> players = new ArrayList<>();
+        this.blacklistedViewers.forEach(uuid -> {
+            Player player = PlayerIndex.get(uuid);
+            if (player != null) players.add(player);
+        });
+        return players;
+    }
+
+    /**
+     * @return The UUIDs of all blacklisted players including offline ones, cannot be modified
+     */
+    public Set<UUID> getBlacklistedViewerUUIDs() {
+        return Collections.unmodifiableSet(this.blacklistedViewers);
+    }
+
+    /**
+     * @return A view of the viewers backed by their player slots, it cannot be modified
+     */
     public Set<UUID> getViewerUUIDs() {
         return this.entity.getViewers();
     }
@@ -471,7 +801,7 @@ public class InteractionBox {
     }
 
     public InteractionBox removeAllViewers() {
-        this.entity.getViewers().forEach(this.entity::removeViewer);
+        new ArrayList<>(this.entity.getViewers()).forEach(this.entity::removeViewer);
         return this;
     }
 
@@ -500,6 +830,7 @@ public class InteractionBox {
         copy.responsive = this.responsive;
         copy.updateTaskPeriod = this.updateTaskPeriod;
         copy.maxPlayerRenderDistanceSquared = this.maxPlayerRenderDistanceSquared;
+        copy.despawnDistanceSquared = this.despawnDistanceSquared;
         return copy;
     }
 
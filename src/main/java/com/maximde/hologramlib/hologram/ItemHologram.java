@@ -10,10 +10,7 @@ import com.github.retrooper.packetevents.util.Quaternion4f;
 import com.maximde.hologramlib.hook.HeadDatabaseHook;
 import com.maximde.hologramlib.utils.PlayerUtils;
 import lombok.Getter;
-import lombok.Setter;
-import lombok.experimental.Accessors;
 import me.tofaa.entitylib.meta.EntityMeta;
-import me.tofaa.entitylib.meta.display.AbstractDisplayMeta;
 import me.tofaa.entitylib.meta.display.ItemDisplayMeta;
 import org.bukkit.Bukkit;
 import org.joml.Vector3f;
@@ -31,16 +28,10 @@ import java.util.concurrent.ThreadLocalRandom;
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public class ItemHologram extends Hologram<ItemHologram> {
 
-    @Setter
-    @Accessors(chain = true)
     protected ItemDisplayMeta.DisplayType displayType = ItemDisplayMeta.DisplayType.FIXED;
 
-    @Setter
-    @Accessors(chain = true)
     protected boolean onFire = false;
 
-    @Setter
-    @Accessors(chain = true)
     protected ItemStack item = new ItemStack.Builder()
             .type(ItemTypes.IRON_AXE).build();
 
@@ -58,25 +49,31 @@ public class ItemHologram extends Hologram<ItemHologram> {
     @Override
     protected EntityMeta applyMeta() {
         ItemDisplayMeta meta = (ItemDisplayMeta) this.entity.getEntityMeta();
-        meta.setInterpolationDelay(-1);
-        meta.setTransformationInterpolationDuration(this.interpolationDurationTransformation);
-        meta.setPositionRotationInterpolationDuration(this.teleportDuration);
-        meta.setTranslation(super.toVector3f(this.translation));
-        meta.setLeftRotation(this.leftRotation);
-        meta.setRightRotation(this.rightRotation);
-        meta.setScale(super.toVector3f(this.scale));
-        meta.setBillboardConstraints(AbstractDisplayMeta.BillboardConstraints.valueOf(this.billboard.name()));
-        meta.setViewRange((float) this.viewRange);
-        meta.setDisplayType(this.displayType);
-        meta.setOnFire(this.onFire);
-        meta.setItem(this.item);
-        meta.setGlowing(this.glowing);
-        meta.setInvisible(this.isInvisible);
-        if(super.brightness > -1) meta.setBrightnessOverride(super.brightness);
-        meta.setGlowColorOverride(this.glowColor);
+        applyDisplayMeta(meta);
+        if (isDirty(MetaField.ENTITY_FLAGS)) meta.setOnFire(this.onFire);
+        applyIfDirty(MetaField.DISPLAY_TYPE, () -> meta.setDisplayType(this.displayType));
+        applyIfDirty(MetaField.ITEM, () -> meta.setItem(this.item));
         return meta;
     }
 
+    public ItemHologram setDisplayType(ItemDisplayMeta.DisplayType displayType) {
+        this.displayType = displayType;
+        markDirty(MetaField.DISPLAY_TYPE);
+        return this;
+    }
+
+    public ItemHologram setOnFire(boolean onFire) {
+        this.onFire = onFire;
+        markDirty(MetaField.ENTITY_FLAGS);
+        return this;
+    }
+
+    public ItemHologram setItem(ItemStack item) {
+        this.item = item;
+        markDirty(MetaField.ITEM);
+        return this;
+    }
+
     /**
      * Sets the item to a player head using the given UUID.
      * The head will automatically glow and be scaled to fit a hologram display.
@@ -98,6 +95,8 @@ public class ItemHologram extends Hologram<ItemHologram> {
                     .component(ComponentTypes.PROFILE, profile)
                     .build();
 
+            markDirty(MetaField.ITEM);
+
             return this;
         } catch (Exception exception) {
             Bukkit.getLogger().warning("Failed to set player head in ItemHologram: " + exception.getMessage());
@@ -123,6 +122,8 @@ public class ItemHologram extends Hologram<ItemHologram> {
                     .component(ComponentTypes.PROFILE, profile)
                     .build();
 
+            markDirty(MetaField.ITEM);
+
             return this;
         } catch (Exception exception) {
             Bukkit.getLogger().warning("Failed to set base64 head in ItemHologram: " + exception.getMessage());
@@ -151,6 +152,8 @@ public class ItemHologram extends Hologram<ItemHologram> {
                     .component(ComponentTypes.PROFILE, profile)
                     .build();
 
+            markDirty(MetaField.ITEM);
+
             return this;
         } catch (Exception exception) {
             Bukkit.getLogger().warning("Failed to set URL head in ItemHologram: " + exception.getMessage());
@@ -229,7 +232,10 @@ public class ItemHologram extends Hologram<ItemHologram> {
         copy.interpolationDurationTransformation = this.interpolationDurationTransformation;
         copy.viewRange = this.viewRange;
         copy.updateTaskPeriod = this.updateTaskPeriod;
+        copy.priority = this.priority;
+        copy.deferredUpdates = this.deferredUpdates;
         copy.maxPlayerRenderDistanceSquared = this.maxPlayerRenderDistanceSquared;
+        copy.despawnDistanceSquared = this.despawnDistanceSquared;
         return copy;
     }
 }
\ No newline at end of file
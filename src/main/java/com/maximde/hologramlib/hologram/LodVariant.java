@@ -0,0 +1,78 @@
+package com.maximde.hologramlib.hologram;
+
+import com.maximde.hologramlib.utils.MiniMessage;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import net.kyori.adventure.text.Component;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Simpler variant of a {@link TextHologram} which is shown to players further away than the variant's distance.
+ * Every property which is not set keeps the value of the hologram.
+ * <p>
+ * Instead of changing the text display an item hologram can be shown as icon. The icon has to be spawned
+ * with {@link RenderMode#VIEWER_LIST}, the text hologram adds and removes its viewers.
+ */
+@Getter
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+public class LodVariant {
+
+    /**
+     * Distance in blocks from which on this variant is shown
+     */
+    private final double distance;
+
+    private @Nullable Component text;
+
+    @Setter @Accessors(chain = true)
+    private @Nullable Integer maxLineWidth;
+
+    /**
+     * Removes the text shadow
+     */
+    @Setter @Accessors(chain = true)
+    private boolean hideShadow = false;
+
+    /**
+     * Removes the background color
+     */
+    @Setter @Accessors(chain = true)
+    private boolean hideBackground = false;
+
+    @Setter @Accessors(chain = true)
+    private @Nullable ItemHologram icon;
+
+    public LodVariant(double distance) {
+        if (distance < 0) throw new IllegalArgumentException("The distance of a LOD variant cannot be negative");
+        this.distance = distance;
+    }
+
+    public LodVariant setText(@Nullable Component text) {
+        this.text = text;
+        return this;
+    }
+
+    public LodVariant setMiniMessageText(String text) {
+        this.text = MiniMessage.get(text);
+        return this;
+    }
+
+    /**
+     * Copies the variant with a copy of the icon, so two holograms never share the viewers of one icon.
+     * The copied icon is not spawned.
+     */
+    LodVariant copy() {
+        LodVariant copy = new LodVariant(this.distance);
+        copy.text = this.text;
+        copy.maxLineWidth = this.maxLineWidth;
+        copy.hideShadow = this.hideShadow;
+        copy.hideBackground = this.hideBackground;
+        copy.icon = this.icon == null ? null : this.icon.copy();
+        return copy;
+    }
+
+    double getDistanceSquared() {
+        return this.distance * this.distance;
+    }
+}
@@ -0,0 +1,35 @@
+package com.maximde.hologramlib.hologram;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Display entity metadata fields which are tracked for changes.
+ * Setters mark the fields they change, {@link Hologram#update()} only sends the marked fields.
+ * The estimated size is the encoded size of one metadata entry and is only used for statistics.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum MetaField {
+    ENTITY_FLAGS(3),
+    GLOW_COLOR(7),
+    INTERPOLATION_DURATION(7),
+    TELEPORT_DURATION(7),
+    TRANSLATION(14),
+    LEFT_ROTATION(18),
+    RIGHT_ROTATION(18),
+    SCALE(14),
+    BILLBOARD(3),
+    BRIGHTNESS(7),
+    VIEW_RANGE(6),
+    TEXT(32),
+    LINE_WIDTH(7),
+    BACKGROUND_COLOR(7),
+    TEXT_OPACITY(3),
+    TEXT_STYLE(3),
+    ITEM(32),
+    DISPLAY_TYPE(3),
+    BLOCK(7);
+
+    private final int estimatedBytes;
+}
@@ -0,0 +1,71 @@
+package com.maximde.hologramlib.hologram;
+
+import com.maximde.hologramlib.utils.BukkitTasks;
+import com.maximde.hologramlib.utils.TaskHandle;
+import org.bukkit.Bukkit;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Refreshes the placeholders of all text holograms with a refresh interval on one shared timer.
+ * Holograms are spread over the ticks of their interval, so they do not all refresh at once.
+ */
+public class PlaceholderRefresher {
+
+    private final Set<TextHologram> holograms = ConcurrentHashMap.newKeySet();
+
+    private TaskHandle task;
+    private long currentTick = 0;
+
+    PlaceholderRefresher() {
+
+    }
+
+    public synchronized void add(TextHologram hologram) {
+        this.holograms.add(hologram);
+        if (this.task == null) this.task = BukkitTasks.runTaskTimerAsync(this::tick, 1, 1);
+    }
+
+    public void remove(TextHologram hologram) {
+        this.holograms.remove(hologram);
+    }
+
+    public int getRefreshedHolograms() {
+        return this.holograms.size();
+    }
+
+    public synchronized void shutdown() {
+        if (this.task != null) this.task.cancel();
+        this.task = null;
+        this.holograms.clear();
+    }
+
+    private synchronized void tick() {
+        long tick = ++this.currentTick;
+        Iterator<TextHologram> iterator = this.holograms.iterator();
+        while (iterator.hasNext()) {
+            TextHologram hologram = iterator.next();
+            long period = hologram.getPlaceholderRefreshTicks();
+            // Killed holograms add themselves again when they get spawned
+            if (period <= 0 || hologram.isDead()) {
+                iterator.remove();
+                continue;
+            }
+            if ((tick + hologram.getEntityID()) % period != 0) continue;
+
+            try {
+                hologram.refreshPlaceholders();
+            } catch (Exception exception) {
+                Bukkit.getLogger().log(Level.WARNING, "Failed to refresh the placeholders of hologram " + hologram.getId(), exception);
+            }
+        }
+
+        if (this.holograms.isEmpty() && this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.maximde.hologramlib.hologram;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.jspecify.annotations.Nullable;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the entity ids and UUIDs of all online players to the players.
+ * Filled on join and cleared on quit, so attached holograms can find their player without looping over all players.
+ * <p>
+ * Every online player also gets a small slot number, the lowest free one on join.
+ * The viewers of the entities are stored as bitsets of these slots, see {@link ViewerSlots}.
+ */
+public final class PlayerIndex {
+
+    private static final Map<Integer, Player> playersByEntityId = new ConcurrentHashMap<>();
+    private static final Map<UUID, Player> playersByUuid = new ConcurrentHashMap<>();
+    private static final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private static final Map<Integer, Player> playersBySlot = new ConcurrentHashMap<>();
+    private static final BitSet usedSlots = new BitSet();
+
+    private PlayerIndex() {
+
+    }
+
+    public static synchronized void add(Player player) {
+        playersByEntityId.put(player.getEntityId(), player);
+        playersByUuid.put(player.getUniqueId(), player);
+        Integer slot = slots.get(player.getUniqueId());
+        if (slot == null) {
+            slot = usedSlots.nextClearBit(0);
+            usedSlots.set(slot);
+            slots.put(player.getUniqueId(), slot);
+        }
+        playersBySlot.put(slot, player);
+    }
+
+    public static synchronized void remove(Player player) {
+        playersByEntityId.remove(player.getEntityId(), player);
+        if (!playersByUuid.remove(player.getUniqueId(), player)) return;
+        Integer slot = slots.remove(player.getUniqueId());
+        if (slot == null) return;
+        // The slot must not be set anywhere when the next player gets it
+        ViewerSlots.releaseSlot(slot);
+        playersBySlot.remove(slot);
+        usedSlots.clear(slot);
+    }
+
+    /**
+     * Indexes all players which are already online, used when the library gets enabled after a reload
+     */
+    public static void addOnlinePlayers() {
+        Bukkit.getOnlinePlayers().forEach(PlayerIndex::add);
+    }
+
+    public static synchronized void clear() {
+        playersByEntityId.clear();
+        playersByUuid.clear();
+        slots.clear();
+        ViewerSlots.releaseAllSlots();
+        playersBySlot.clear();
+        usedSlots.clear();
+    }
+
+    /**
+     * @return The online player with the entity id or null if it does not belong to a player
+     */
+    public static @Nullable Player getByEntityId(int entityId) {
+        return playersByEntityId.get(entityId);
+    }
+
+    /**
+     * @return The online player with the UUID or null if the player is not online
+     */
+    public static @Nullable Player get(UUID uuid) {
+        return playersByUuid.get(uuid);
+    }
+
+    /**
+     * @return The slot of the online player or -1 if the player is not indexed
+     */
+    public static int getSlot(UUID uuid) {
+        Integer slot = slots.get(uuid);
+        return slot == null ? -1 : slot;
+    }
+
+    public static @Nullable Player getBySlot(int slot) {
+        return playersBySlot.get(slot);
+    }
+}
@@ -0,0 +1,196 @@
+package com.maximde.hologramlib.hologram;
+
+import com.github.retrooper.packetevents.protocol.entity.type.EntityType;
+import com.github.retrooper.packetevents.protocol.world.Location;
+import com.github.retrooper.packetevents.wrapper.PacketWrapper;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityRelativeMove;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityRelativeMoveAndRotation;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityRotation;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityTeleport;
+import com.maximde.hologramlib.utils.PacketQueue;
+import me.tofaa.entitylib.wrapper.WrapperEntity;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Entity which sends the packets for its viewers through the {@link PacketQueue} instead of writing them directly.
+ * <p>
+ * The viewers are stored in {@link ViewerSlots} instead of the UUID set of EntityLib, every viewer method is overridden.
+ * EntityLib sends everything meant for the viewers through {@link #sendPacketToViewers(PacketWrapper)},
+ * its own set is only filled for a moment to let it write the spawn and destroy packets of a single viewer.
+ */
+class QueuedEntity extends WrapperEntity {
+
+    /**
+     * Relative moves are encoded as shorts in 1/4096 blocks
+     */
+    private static final double MOVE_SCALE = 4096;
+
+    private final ToDoubleFunction<UUID> ranking;
+
+    /**
+     * Position and rotation every viewer got last, as the client knows it
+     */
+    private final Map<UUID, Location> sentLocations = new ConcurrentHashMap<>();
+
+    private final ViewerSlots viewers = new ViewerSlots();
+
+    /**
+     * @param ranking Importance of the updates for a viewer, used by the bandwidth budget of the queue
+     */
+    QueuedEntity(EntityType entityType, ToDoubleFunction<UUID> ranking) {
+        super(entityType);
+        this.ranking = ranking;
+    }
+
+    @Override
+    public void sendPacketToViewers(PacketWrapper<?> packet) {
+        // Sent right away when the queue is not running
+        for (UUID viewer : getViewers()) {
+            PacketQueue.enqueue(viewer, packet, rank(viewer));
+        }
+    }
+
+    /**
+     * EntityLib writes the spawn packets of a new viewer directly. Everything still queued for the viewer,
+     * like the destroy packet of a despawn in the same tick (sent through {@link #sendPacketToViewers(PacketWrapper)}),
+     * is flushed first so it cannot arrive after the spawn.
+     */
+    @Override
+    public void addViewer(UUID uuid) {
+        if (!this.viewers.add(uuid)) return;
+        this.sentLocations.remove(uuid);
+        PacketQueue.runLocked(uuid, () -> {
+            if (PacketQueue.isRunning()) PacketQueue.flush(uuid);
+            super.addViewer(uuid);
+            super.removeViewerSilently(uuid);
+        });
+    }
+
+    @Override
+    public void addViewerSilently(UUID uuid) {
+        this.viewers.add(uuid);
+    }
+
+    /**
+     * EntityLib writes the destroy packet directly. The metadata and movement of this entity still queued
+     * or deferred for the viewer are dropped, so they cannot arrive after a new spawn for the same viewer.
+     */
+    @Override
+    public void removeViewer(UUID uuid) {
+        if (!this.viewers.remove(uuid)) return;
+        this.sentLocations.remove(uuid);
+        PacketQueue.runLocked(uuid, () -> {
+            PacketQueue.drop(uuid, getEntityId());
+            super.addViewerSilently(uuid);
+            super.removeViewer(uuid);
+        });
+    }
+
+    @Override
+    public void removeViewerSilently(UUID uuid) {
+        this.viewers.remove(uuid);
+        this.sentLocations.remove(uuid);
+        PacketQueue.drop(uuid, getEntityId());
+    }
+
+    @Override
+    public boolean hasViewer(UUID uuid) {
+        return this.viewers.contains(uuid);
+    }
+
+    /**
+     * @return A view of the viewers which cannot be modified
+     */
+    @Override
+    public Set<UUID> getViewers() {
+        return this.viewers.view();
+    }
+
+    /**
+     * @see ViewerSlots#diff(Collection)
+     */
+    ViewerSlots.Diff diffViewers(Collection<? extends Player> players) {
+        return this.viewers.diff(players);
+    }
+
+    /**
+     * Forgets the positions the viewers know, has to be called when the entity gets spawned or removed
+     */
+    void resetMoves() {
+        this.sentLocations.clear();
+    }
+
+    @Override
+    public void sendPacketsToViewers(PacketWrapper<?>... packets) {
+        for (PacketWrapper<?> packet : packets) {
+            sendPacketToViewers(packet);
+        }
+    }
+
+    /**
+     * Moves the entity and sends every viewer the smallest packet which gets it from the position it knows to the new one:
+     * a relative move if the distance fits, a rotation if only the rotation changed and an absolute teleport otherwise.
+     */
+    synchronized void move(Location location) {
+        if (!isSpawned()) return;
+        // Only the position is updated, the absolute teleport EntityLib would send is replaced by the packets below
+        this.location = location;
+
+        for (UUID viewer : getViewers()) {
+            PacketWrapper<?> packet = createMovePacket(viewer, location);
+            if (packet != null) PacketQueue.enqueue(viewer, packet, rank(viewer));
+        }
+    }
+
+    private PacketWrapper<?> createMovePacket(UUID viewer, Location location) {
+        Location sent = this.sentLocations.get(viewer);
+        if (sent == null) {
+            this.sentLocations.put(viewer, location.clone());
+            return new WrapperPlayServerEntityTeleport(getEntityId(), location, false);
+        }
+
+        long deltaX = Math.round((location.getX() - sent.getX()) * MOVE_SCALE);
+        long deltaY = Math.round((location.getY() - sent.getY()) * MOVE_SCALE);
+        long deltaZ = Math.round((location.getZ() - sent.getZ()) * MOVE_SCALE);
+        if (!fitsShort(deltaX) || !fitsShort(deltaY) || !fitsShort(deltaZ)) {
+            this.sentLocations.put(viewer, location.clone());
+            return new WrapperPlayServerEntityTeleport(getEntityId(), location, false);
+        }
+
+        boolean moved = deltaX != 0 || deltaY != 0 || deltaZ != 0;
+        boolean rotated = toAngle(location.getYaw()) != toAngle(sent.getYaw()) || toAngle(location.getPitch()) != toAngle(sent.getPitch());
+        if (!moved && !rotated) return null;
+
+        // Keep the rounded position, so the rounding errors of many small moves do not add up
+        this.sentLocations.put(viewer, new Location(sent.getX() + deltaX / MOVE_SCALE, sent.getY() + deltaY / MOVE_SCALE,
+                sent.getZ() + deltaZ / MOVE_SCALE, location.getYaw(), location.getPitch()));
+
+        if (!moved) {
+            return new WrapperPlayServerEntityRotation(getEntityId(), location.getYaw(), location.getPitch(), false);
+        }
+        if (!rotated) {
+            return new WrapperPlayServerEntityRelativeMove(getEntityId(), deltaX / MOVE_SCALE, deltaY / MOVE_SCALE, deltaZ / MOVE_SCALE, false);
+        }
+        return new WrapperPlayServerEntityRelativeMoveAndRotation(getEntityId(), deltaX / MOVE_SCALE, deltaY / MOVE_SCALE,
+                deltaZ / MOVE_SCALE, location.getYaw(), location.getPitch(), false);
+    }
+
+    private double rank(UUID viewer) {
+        return PacketQueue.isBudgeted() ? this.ranking.applyAsDouble(viewer) : 0;
+    }
+
+    private static boolean fitsShort(long value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    private static byte toAngle(float degrees) {
+        return (byte) (degrees * 256.0F / 360.0F);
+    }
+}
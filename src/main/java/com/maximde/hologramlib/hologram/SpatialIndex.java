@@ -0,0 +1,186 @@
+package com.maximde.hologramlib.hologram;
+
+import lombok.Getter;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Grid of vertical cells per world which keeps track of positioned values.
+ * Used to find holograms close to a location without checking every single hologram.
+ * By default one cell covers exactly one chunk column.
+ *
+ * @param <T> The indexed value type
+ */
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+public class SpatialIndex<T> {
+
+    public static final int DEFAULT_CELL_SIZE = 16;
+
+    @Getter
+    private final int cellSize;
+
+    private final Map<UUID, Map<Long, Set<T>>> worlds = new ConcurrentHashMap<>();
+    private final Map<T, Position> positions = new ConcurrentHashMap<>();
+
+    private record Position(UUID world, double x, double y, double z, long cellKey) {}
+
+    public SpatialIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialIndex(int cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("The cell size has to be greater than 0");
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Inserts the value or moves it to the new location if it is already indexed
+     *
+     * @return true if the value was inserted or moved to another cell
+     */
+    public synchronized boolean put(T value, Location location) {
+        World world = location.getWorld();
+        if (world == null) {
+            remove(value);
+            return false;
+        }
+
+        Position position = new Position(world.getUID(), location.getX(), location.getY(), location.getZ(),
+                cellKey(cell(location.getX()), cell(location.getZ())));
+        Position previous = this.positions.put(value, position);
+
+        if (previous != null) {
+            if (previous.world().equals(position.world()) && previous.cellKey() == position.cellKey()) return false;
+            removeFromCell(value, previous);
+        }
+
+        this.worlds.computeIfAbsent(position.world(), uuid -> new ConcurrentHashMap<>())
+                .computeIfAbsent(position.cellKey(), key -> ConcurrentHashMap.newKeySet())
+                .add(value);
+        return true;
+    }
+
+    /**
+     * Inserts or moves all values while holding the lock only once
+     *
+     * @return The values which were inserted or moved to another cell
+     */
+    public synchronized List<T> putAll(Map<T, Location> locations) {
+        List<T> moved = new ArrayList<>();
+        locations.forEach((value, location) -> {
+            if (put(value, location)) moved.add(value);
+        });
+        return moved;
+    }
+
+    public synchronized void remove(T value) {
+        Position previous = this.positions.remove(value);
+        if (previous != null) removeFromCell(value, previous);
+    }
+
+    public boolean contains(T value) {
+        return this.positions.containsKey(value);
+    }
+
+    public int size() {
+        return this.positions.size();
+    }
+
+    public synchronized void clear() {
+        this.positions.clear();
+        this.worlds.clear();
+    }
+
+    /**
+     * @return All values within the radius around the location
+     */
+    public List<T> getNear(Location location, double radius) {
+        List<T> result = new ArrayList<>();
+        forEachNear(location, radius, result::add);
+        return result;
+    }
+
+    public void forEachNear(Location location, double radius, Consumer<T> action) {
+        World world = location.getWorld();
+        if (world == null) return;
+        forEachNear(world.getUID(), location.getX(), location.getY(), location.getZ(), radius, action);
+    }
+
+    /**
+     * Calls the action for every value within the radius around the given position.
+     * If the radius covers more cells than the world has occupied cells, only the occupied cells are checked.
+     */
+    public void forEachNear(UUID worldId, double x, double y, double z, double radius, Consumer<T> action) {
+        Map<Long, Set<T>> cells = this.worlds.get(worldId);
+        if (cells == null || cells.isEmpty() || radius < 0) return;
+
+        double radiusSquared = radius * radius;
+        int minX = cell(x - radius);
+        int maxX = cell(x + radius);
+        int minZ = cell(z - radius);
+        int maxZ = cell(z + radius);
+
+        long coveredCells = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        if (coveredCells > cells.size()) {
+            for (Map.Entry<Long, Set<T>> entry : cells.entrySet()) {
+                long key = entry.getKey();
+                int cellX = (int) (key >> 32);
+                int cellZ = (int) key;
+                if (cellX < minX || cellX > maxX || cellZ < minZ || cellZ > maxZ) continue;
+                visit(entry.getValue(), worldId, x, y, z, radiusSquared, action);
+            }
+            return;
+        }
+
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                Set<T> cell = cells.get(cellKey(cellX, cellZ));
+                if (cell != null) visit(cell, worldId, x, y, z, radiusSquared, action);
+            }
+        }
+    }
+
+    private void visit(Set<T> cell, UUID worldId, double x, double y, double z,
+                       double radiusSquared, Consumer<T> action) {
+        for (T value : cell) {
+            Position position = this.positions.get(value);
+            if (position == null || !position.world().equals(worldId)) continue;
+            double dx = position.x() - x;
+            double dy = position.y() - y;
+            double dz = position.z() - z;
+            if (dx * dx + dy * dy + dz * dz <= radiusSquared) action.accept(value);
+        }
+    }
+
+    private void removeFromCell(T value, Position position) {
+        Map<Long, Set<T>> cells = this.worlds.get(position.world());
+        if (cells == null) return;
+        Set<T> cell = cells.get(position.cellKey());
+        if (cell == null) return;
+        cell.remove(value);
+        if (cell.isEmpty()) cells.remove(position.cellKey());
+    }
+
+    /**
+     * @return Whether both locations are in the same world and cell
+     */
+    public boolean isSameCell(Location first, Location second) {
+        return Objects.equals(first.getWorld(), second.getWorld())
+                && cell(first.getX()) == cell(second.getX())
+                && cell(first.getZ()) == cell(second.getZ());
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / this.cellSize);
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+}
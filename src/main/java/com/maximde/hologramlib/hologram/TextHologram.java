@@ -2,42 +2,67 @@ package com.maximde.hologramlib.hologram;
 
 import com.github.retrooper.packetevents.protocol.entity.type.EntityTypes;
 import com.github.retrooper.packetevents.util.Quaternion4f;
+import com.github.retrooper.packetevents.protocol.entity.data.EntityData;
+import com.github.retrooper.packetevents.protocol.entity.data.EntityDataTypes;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityMetadata;
 import com.maximde.hologramlib.HologramLib;
+import com.maximde.hologramlib.utils.BukkitTasks;
 import com.maximde.hologramlib.utils.MiniMessage;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import me.tofaa.entitylib.meta.EntityMeta;
-import me.tofaa.entitylib.meta.display.AbstractDisplayMeta;
 import me.tofaa.entitylib.meta.display.TextDisplayMeta;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import org.bukkit.ChatColor;
+import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.TextDisplay;
+import org.jetbrains.annotations.ApiStatus;
 import org.joml.Vector3f;
+import org.jspecify.annotations.Nullable;
 
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
 
 @SuppressWarnings({"unused", "UnusedReturnValue"})
 public class TextHologram extends Hologram<TextHologram> {
 
     public static final int TEXT_DISPLAY_META_INDEX = 15; // Index for the text component in TextDisplayMeta
+    /**
+     * Index of the text in the metadata packet, EntityLib shifts it for the server version
+     */
+    public static final int TEXT_INDEX = TextDisplayMeta.OFFSET;
 
     @Getter
     protected String rawText = "";
     protected Component text = Component.text("");
 
-    @Setter @Getter @Accessors(chain = true)
+    /**
+     * Template the text is built from, null if the text was set directly
+     */
+    @Getter
+    private @Nullable TextTemplate template;
+
+    /**
+     * Current values of the template slots
+     */
+    private final Map<String, Component> slotValues = new ConcurrentHashMap<>();
+
+    @Getter
     private boolean shadow = true;
 
-    @Setter @Getter @Accessors(chain = true)
+    @Getter
     private int maxLineWidth = 200;
 
     /**
      * The background color is an argb integer which can be generated <a href="https://argb-int-calculator.netlify.app/">here</a>
      */
-    @Setter @Getter @Accessors(chain = true)
+    @Getter
     private int backgroundColor;
 
     /**
@@ -45,18 +70,65 @@ public class TextHologram extends Hologram<TextHologram> {
      * When true, text will be visible through solid blocks.
      * When false, blocks will occlude the text normally.
      */
-    @Setter @Getter @Accessors(chain = true)
+    @Getter
     private boolean seeThroughBlocks = false;
 
-    @Setter @Getter @Accessors(chain = true)
+    @Getter
     private TextDisplay.TextAlignment alignment = TextDisplay.TextAlignment.CENTER;
 
-    @Setter @Getter @Accessors(chain = true)
+    @Getter
     private byte textOpacity = (byte) -1;
 
     @Setter @Getter @Accessors(chain = true)
     private boolean placeholderApiEnabled = false;
 
+    /**
+     * Ticks a resolved placeholder text stays valid for a player, afterward it is resolved again in the background
+     */
+    @Getter
+    private long placeholderCacheTicks = 20;
+
+    /**
+     * Placeholder text resolved for every player, read by the packet listener
+     */
+    private final Map<UUID, ResolvedText> placeholderResults = new ConcurrentHashMap<>();
+
+    /**
+     * @param rawText Raw text the component was resolved from, a change of the raw text invalidates it
+     */
+    private record ResolvedText(String rawText, Component component, long expiresAt) {}
+
+    /**
+     * Players for which the placeholders are currently being resolved
+     */
+    private final Set<UUID> resolvingPlaceholders = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Ticks between two placeholder refreshes for all viewers, 0 only resolves them when the text is sent anyway
+     */
+    @Getter
+    private long placeholderRefreshTicks = 0;
+
+    /**
+     * Whether the placeholders of this hologram may be resolved off the main thread,
+     * only enable this if all used expansions are thread safe
+     */
+    @Setter @Getter @Accessors(chain = true)
+    private boolean asyncPlaceholders = false;
+
+    private static final LongAdder resolvedPlaceholderTexts = new LongAdder();
+    private static final LongAdder changedPlaceholderTexts = new LongAdder();
+
+    /**
+     * Simpler variants for players further away, sorted by their distance
+     */
+    private final List<LodVariant> lodVariants = new CopyOnWriteArrayList<>();
+
+    /**
+     * Index of the LOD variant every player in range currently gets, -1 for the full detail
+     */
+    private final Map<UUID, Integer> lodTiers = new ConcurrentHashMap<>();
+
     /**
      * Creates a new text hologram with the specified ID and render mode.
      *
@@ -91,6 +163,7 @@ public class TextHologram extends Hologram<TextHologram> {
 
     /**
      * Creates a copy of this hologram with a new ID.
+     * The icons of the LOD variants are copied as well and have to be spawned like the original icons.
      *
      * @return A new TextHologram instance with copied properties
      */
@@ -99,6 +172,8 @@ public class TextHologram extends Hologram<TextHologram> {
         TextHologram copy = new TextHologram(id, this.renderMode);
         copy.text = this.text;
         copy.rawText = this.rawText;
+        copy.template = this.template;
+        copy.slotValues.putAll(this.slotValues);
         copy.scale = new Vector3f(this.scale);
         copy.translation = new Vector3f(this.translation);
         copy.rightRotation = new Quaternion4f(this.rightRotation.getX(), this.rightRotation.getY(),
@@ -118,8 +193,15 @@ public class TextHologram extends Hologram<TextHologram> {
         copy.glowColor = this.glowColor;
         copy.textOpacity = this.textOpacity;
         copy.updateTaskPeriod = this.updateTaskPeriod;
+        copy.priority = this.priority;
+        copy.deferredUpdates = this.deferredUpdates;
         copy.maxPlayerRenderDistanceSquared = this.maxPlayerRenderDistanceSquared;
+        copy.despawnDistanceSquared = this.despawnDistanceSquared;
         copy.placeholderApiEnabled = this.placeholderApiEnabled;
+        copy.placeholderCacheTicks = this.placeholderCacheTicks;
+        copy.asyncPlaceholders = this.asyncPlaceholders;
+        if (this.placeholderRefreshTicks > 0) copy.setPlaceholderRefreshTicks(this.placeholderRefreshTicks);
+        this.lodVariants.forEach(variant -> copy.lodVariants.add(variant.copy()));
         return copy;
     }
 
@@ -128,30 +210,56 @@ public class TextHologram extends Hologram<TextHologram> {
         TextDisplayMeta meta = (TextDisplayMeta) super.entity.getEntityMeta();
 
         // Set the text, if PlaceholderAPI is enabled, we'll handle it per-player in the hook
-        meta.setText(this.text);
-
-        meta.setInterpolationDelay(-1);
-        meta.setTransformationInterpolationDuration(this.interpolationDurationTransformation);
-        meta.setPositionRotationInterpolationDuration(this.teleportDuration);
-        meta.setTranslation(super.toVector3f(this.translation));
-        meta.setLeftRotation(this.leftRotation);
-        meta.setRightRotation(this.rightRotation);
-        meta.setScale(super.toVector3f(this.scale));
-        meta.setBillboardConstraints(AbstractDisplayMeta.BillboardConstraints.valueOf(this.billboard.name()));
-        meta.setLineWidth(this.maxLineWidth);
-        meta.setViewRange((float) this.viewRange);
-        meta.setGlowing(this.glowing);
-        meta.setBackgroundColor(this.backgroundColor);
-        meta.setTextOpacity(this.textOpacity);
-        meta.setGlowColorOverride(this.glowColor);
-        meta.setShadow(this.shadow);
-        meta.setInvisible(this.isInvisible);
-        if(super.brightness > -1) meta.setBrightnessOverride(super.brightness);
-        meta.setSeeThrough(this.seeThroughBlocks);
-        setInternalAlignment(meta);
+        applyIfDirty(MetaField.TEXT, this.rawText.length() + 4, () -> meta.setText(this.text));
+
+        applyDisplayMeta(meta);
+        applyIfDirty(MetaField.LINE_WIDTH, () -> meta.setLineWidth(this.maxLineWidth));
+        applyIfDirty(MetaField.BACKGROUND_COLOR, () -> meta.setBackgroundColor(this.backgroundColor));
+        applyIfDirty(MetaField.TEXT_OPACITY, () -> meta.setTextOpacity(this.textOpacity));
+        applyIfDirty(MetaField.TEXT_STYLE, () -> {
+            meta.setShadow(this.shadow);
+            meta.setSeeThrough(this.seeThroughBlocks);
+            setInternalAlignment(meta);
+        });
         return meta;
     }
 
+    public TextHologram setShadow(boolean shadow) {
+        this.shadow = shadow;
+        markDirty(MetaField.TEXT_STYLE);
+        return this;
+    }
+
+    public TextHologram setMaxLineWidth(int maxLineWidth) {
+        this.maxLineWidth = maxLineWidth;
+        markDirty(MetaField.LINE_WIDTH);
+        return this;
+    }
+
+    public TextHologram setBackgroundColor(int backgroundColor) {
+        this.backgroundColor = backgroundColor;
+        markDirty(MetaField.BACKGROUND_COLOR);
+        return this;
+    }
+
+    public TextHologram setSeeThroughBlocks(boolean seeThroughBlocks) {
+        this.seeThroughBlocks = seeThroughBlocks;
+        markDirty(MetaField.TEXT_STYLE);
+        return this;
+    }
+
+    public TextHologram setAlignment(TextDisplay.TextAlignment alignment) {
+        this.alignment = alignment;
+        markDirty(MetaField.TEXT_STYLE);
+        return this;
+    }
+
+    public TextHologram setTextOpacity(byte textOpacity) {
+        this.textOpacity = textOpacity;
+        markDirty(MetaField.TEXT_OPACITY);
+        return this;
+    }
+
     @Override
     public int getHeight() {
         String plainText = getTextWithoutColor();
@@ -174,6 +282,98 @@ public class TextHologram extends Hologram<TextHologram> {
         return Math.max(1, (int) Math.ceil(totalWidth * Math.max(this.scale.x, this.scale.z)));
     }
 
+    /**
+     * Adds a variant which is shown instead of the full hologram to players further away than its distance.
+     * Metadata is only sent again when a player crosses the distance of a variant.
+     */
+    public TextHologram addLodVariant(LodVariant variant) {
+        retainDetails(Collections.emptySet());
+        this.lodVariants.add(variant);
+        this.lodVariants.sort(Comparator.comparingDouble(LodVariant::getDistance));
+        return this;
+    }
+
+    public TextHologram clearLodVariants() {
+        retainDetails(Collections.emptySet());
+        this.lodVariants.clear();
+        return this;
+    }
+
+    public List<LodVariant> getLodVariants() {
+        return Collections.unmodifiableList(this.lodVariants);
+    }
+
+    /**
+     * @return The variant the player currently gets, null for the full hologram
+     */
+    public @Nullable LodVariant getLodVariant(UUID player) {
+        Integer tier = this.lodTiers.get(player);
+        return tier == null ? null : variantAt(tier);
+    }
+
+    private @Nullable LodVariant variantAt(int tier) {
+        if (tier < 0 || tier >= this.lodVariants.size()) return null;
+        return this.lodVariants.get(tier);
+    }
+
+    private int tierFor(double distanceSquared) {
+        int tier = -1;
+        for (int i = 0; i < this.lodVariants.size(); i++) {
+            if (distanceSquared < this.lodVariants.get(i).getDistanceSquared()) break;
+            tier = i;
+        }
+        return tier;
+    }
+
+    @Override
+    protected boolean updateDetail(Player player, Location playerLocation) {
+        if (this.lodVariants.isEmpty()) return true;
+
+        UUID uuid = player.getUniqueId();
+        int tier = tierFor(playerLocation.distanceSquared(this.location));
+        Integer previousTier = this.lodTiers.put(uuid, tier);
+        LodVariant variant = variantAt(tier);
+        ItemHologram icon = variant == null ? null : variant.getIcon();
+
+        if (previousTier == null || previousTier != tier) {
+            LodVariant previous = previousTier == null ? null : variantAt(previousTier);
+            if (previous != null && previous.getIcon() != null && previous.getIcon() != icon) {
+                previous.getIcon().removeEntityViewer(uuid);
+            }
+            if (icon != null) {
+                icon.addViewer(player);
+            } else if (this.entity.hasViewer(uuid)) {
+                sendPacket(this.entity.getEntityMeta().createPacket(), Collections.singletonList(player));
+            }
+        }
+        return icon == null;
+    }
+
+    @Override
+    protected void retainDetails(Set<UUID> playersInRange) {
+        for (UUID uuid : new ArrayList<>(this.lodTiers.keySet())) {
+            if (!playersInRange.contains(uuid)) resetDetail(uuid);
+        }
+    }
+
+    @Override
+    protected void resetDetail(UUID player) {
+        Integer tier = this.lodTiers.remove(player);
+        LodVariant variant = tier == null ? null : variantAt(tier);
+        if (variant != null && variant.getIcon() != null) variant.getIcon().removeEntityViewer(player);
+    }
+
+    @Override
+    protected void forgetDetail(UUID player) {
+        this.placeholderResults.remove(player);
+    }
+
+    @Override
+    protected boolean hasDetail(UUID player) {
+        LodVariant variant = getLodVariant(player);
+        return variant != null && variant.getIcon() != null;
+    }
+
     private void setInternalAlignment(TextDisplayMeta meta) {
         switch (this.alignment) {
             case LEFT -> meta.setAlignLeft(true);
@@ -194,38 +394,215 @@ public class TextHologram extends Hologram<TextHologram> {
     }
 
     public TextHologram setText(String text) {
+        this.template = null;
         this.rawText = text;
         this.text = Component.text(replaceFontImages(text));
+        markDirty(MetaField.TEXT);
         return this;
     }
 
     public TextHologram setText(Component component) {
+        this.template = null;
         this.rawText = net.kyori.adventure.text.minimessage.MiniMessage.miniMessage().serialize(component);
         this.text = component;
+        markDirty(MetaField.TEXT);
         return this;
     }
 
     public TextHologram setMiniMessageText(String text) {
+        this.template = null;
         this.rawText = text;
         this.text = MiniMessage.get(replaceFontImages(text));
+        markDirty(MetaField.TEXT);
         return this;
     }
 
     public TextHologram setRawText(String rawText) {
+        this.template = null;
         this.rawText = rawText;
 
         if (!placeholderApiEnabled) {
             this.text = MiniMessage.get(replaceFontImages(rawText));
         }
+        markDirty(MetaField.TEXT);
+        return this;
+    }
+
+    /**
+     * Uses the template for the text, afterward only the slots have to be set and no MiniMessage is parsed on updates.
+     * Slot values set before are kept. Font images in the template are replaced, which compiles it again if it has any.
+     * Disables PlaceholderAPI, its placeholders are not resolved in templates.
+     */
+    public TextHologram setTemplate(TextTemplate template) {
+        String source = replaceFontImages(template.getSource());
+        this.template = source.equals(template.getSource()) ? template : template.withSource(source);
+        this.rawText = template.getSource();
+        this.placeholderApiEnabled = false;
+        return applyTemplate();
+    }
+
+    /**
+     * Sets the slot to the literal text with font images replaced, tags in the value are not parsed
+     */
+    public TextHologram setSlot(String slot, String value) {
+        return setSlot(slot, Component.text(replaceFontImages(value)));
+    }
+
+    public TextHologram setSlot(String slot, Number value) {
+        return setSlot(slot, Component.text(String.valueOf(value)));
+    }
+
+    public TextHologram setSlot(String slot, Component value) {
+        Component previous = this.slotValues.put(slot, value);
+        if (value.equals(previous)) return this;
+        return applyTemplate();
+    }
+
+    public @Nullable Component getSlot(String slot) {
+        return this.slotValues.get(slot);
+    }
+
+    private TextHologram applyTemplate() {
+        if (this.template == null) return this;
+        this.text = this.template.apply(this.slotValues);
+        markDirty(MetaField.TEXT);
+        return this;
+    }
+
+    public TextHologram setPlaceholderCacheTicks(long placeholderCacheTicks) {
+        this.placeholderCacheTicks = placeholderCacheTicks;
+        return this;
+    }
+
+    /**
+     * Resolves the placeholders for all viewers in this interval and only sends the text to viewers for which it changed.
+     * Replaces calling update() in a timer to keep placeholders up to date.
+     * @param placeholderRefreshTicks Interval in ticks, 0 disables the refresh
+     */
+    public TextHologram setPlaceholderRefreshTicks(long placeholderRefreshTicks) {
+        this.placeholderRefreshTicks = placeholderRefreshTicks;
+        if (placeholderRefreshTicks > 0) {
+            HologramLib.getManager().ifPresent(manager -> manager.getPlaceholderRefresher().add(this));
+        }
         return this;
     }
 
+    /**
+     * Returns the placeholder text last resolved for the player without resolving anything on the calling thread.
+     * If the text is missing, expired or belongs to an old raw text, it gets resolved again on the thread of the player
+     * and sent to the player once it changed.
+     *
+     * @return The last resolved text, even if it is expired, or null if the text was never resolved for the player
+     */
+    @ApiStatus.Internal
+    public @Nullable Component getCachedTextForPlayer(Player player) {
+        ResolvedText resolved = this.placeholderResults.get(player.getUniqueId());
+        if (resolved == null || System.currentTimeMillis() >= resolved.expiresAt() || !resolved.rawText().equals(this.rawText)) {
+            resolvePlaceholdersLater(player);
+        }
+        return resolved == null ? null : resolved.component();
+    }
+
+    @Override
+    protected void onSpawn() {
+        if (this.placeholderRefreshTicks > 0) {
+            HologramLib.getManager().ifPresent(manager -> manager.getPlaceholderRefresher().add(this));
+        }
+    }
+
+    /**
+     * Resolves the placeholders before the spawn packets are sent, when the viewer gets added on the thread owning it.
+     * Otherwise the first metadata packet would show the unresolved placeholders until the text is resolved later.
+     */
+    @Override
+    public TextHologram addViewer(Player player) {
+        UUID uuid = player.getUniqueId();
+        if (this.placeholderApiEnabled && !this.entity.hasViewer(uuid) && BukkitTasks.isOwnedByCurrentThread(player)) {
+            ResolvedText resolved = this.placeholderResults.get(uuid);
+            if ((resolved == null || !resolved.rawText().equals(this.rawText)) && this.resolvingPlaceholders.add(uuid)) {
+                resolvePlaceholders(player);
+            }
+        }
+        return super.addViewer(player);
+    }
+
+    /**
+     * Resolves the placeholders for every viewer and sends the text to the viewers for which it changed.
+     * Called by the {@link PlaceholderRefresher} every {@link #getPlaceholderRefreshTicks()} ticks.
+     */
+    void refreshPlaceholders() {
+        if (!this.placeholderApiEnabled || this.dead) return;
+        for (Player viewer : getViewers()) {
+            if (!this.asyncPlaceholders) {
+                resolvePlaceholdersLater(viewer);
+            } else if (this.resolvingPlaceholders.add(viewer.getUniqueId())) {
+                resolvePlaceholders(viewer);
+            }
+        }
+    }
+
+    private void resolvePlaceholdersLater(Player player) {
+        if (!this.resolvingPlaceholders.add(player.getUniqueId())) return;
+        if (this.asyncPlaceholders) {
+            BukkitTasks.runTaskAsync(() -> resolvePlaceholders(player));
+        } else {
+            BukkitTasks.runTaskLater(() -> resolvePlaceholders(player), player, 1);
+        }
+    }
+
+    /**
+     * Resolves the placeholders for the player on the current thread
+     * and sends the text if it differs from what the player got last.
+     * The player has to be marked as resolving before.
+     */
+    private void resolvePlaceholders(Player player) {
+        UUID uuid = player.getUniqueId();
+        try {
+            if (!player.isOnline() || this.dead) return;
+            String resolvedFrom = this.rawText;
+            Component component = getTextForPlayer(player);
+            ResolvedText previous = this.placeholderResults.put(uuid,
+                    new ResolvedText(resolvedFrom, component, System.currentTimeMillis() + this.placeholderCacheTicks * 50));
+            resolvedPlaceholderTexts.increment();
+            if (previous == null || !previous.component().equals(component)) {
+                changedPlaceholderTexts.increment();
+                sendText(player, component);
+            }
+        } finally {
+            this.resolvingPlaceholders.remove(uuid);
+        }
+    }
+
+    /**
+     * @return How often the placeholders of a text were resolved for a player
+     */
+    public static long getResolvedPlaceholderTexts() {
+        return resolvedPlaceholderTexts.sum();
+    }
+
+    /**
+     * @return How often a resolved text differed from the previous one and was sent,
+     * the difference to {@link #getResolvedPlaceholderTexts()} is the amount of packets saved
+     */
+    public static long getChangedPlaceholderTexts() {
+        return changedPlaceholderTexts.sum();
+    }
+
+    /**
+     * Sends only the text of the hologram to the player
+     */
+    private void sendText(Player player, Component component) {
+        if (!this.entity.hasViewer(player.getUniqueId())) return;
+        sendPacket(new WrapperPlayServerEntityMetadata(this.entityID, List.of(
+                new EntityData<>(TEXT_INDEX, EntityDataTypes.ADV_COMPONENT, component))), Collections.singletonList(player));
+    }
+
     /**
      * Gets the text with placeholders replaced for a specific player.
      * Only works if PlaceholderAPI is enabled and available.
      */
     public Component getTextForPlayer(Player player) {
-        if (!placeholderApiEnabled || rawText == null || rawText.isEmpty()) {
+        if (!placeholderApiEnabled || this.template != null || rawText == null || rawText.isEmpty()) {
             return this.text;
         }
 
@@ -0,0 +1,109 @@
+package com.maximde.hologramlib.hologram;
+
+import com.maximde.hologramlib.utils.MiniMessage;
+import lombok.Getter;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TranslatableComponent;
+import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * MiniMessage layout which is parsed once, with named slots for the values that change.
+ * Slots are written as tags, for example {@code <gold>Online: <count>} with the slot {@code count}.
+ * Applying values only replaces the slots in the parsed component tree, parts without slots are reused as they are.
+ */
+@SuppressWarnings({"unused"})
+public final class TextTemplate {
+
+    private static final String SLOT_KEY_PREFIX = "hologramlib.slot.";
+
+    @Getter
+    private final String source;
+
+    @Getter
+    private final Set<String> slots;
+
+    private final Component compiled;
+
+    /**
+     * Components of the compiled tree which contain a slot somewhere below them
+     */
+    private final Set<Component> slotParents = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private TextTemplate(String source, Set<String> slots) {
+        this.source = source;
+        this.slots = Collections.unmodifiableSet(slots);
+
+        TagResolver.Builder resolver = TagResolver.builder();
+        for (String slot : slots) {
+            resolver.resolver(Placeholder.component(slot, Component.translatable(SLOT_KEY_PREFIX + slot)));
+        }
+        this.compiled = MiniMessage.get(source, resolver.build());
+        markSlotParents(this.compiled);
+    }
+
+    /**
+     * Parses the template once
+     * @param template MiniMessage text
+     * @param slots Names of the slots, they are used like tags in the template
+     */
+    public static TextTemplate compile(String template, String... slots) {
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, slots);
+        return new TextTemplate(template, names);
+    }
+
+    /**
+     * Compiles another source with the same slots
+     */
+    TextTemplate withSource(String source) {
+        return new TextTemplate(source, new LinkedHashSet<>(this.slots));
+    }
+
+    /**
+     * Builds the component with the slot values, slots without a value stay empty
+     */
+    public Component apply(Map<String, Component> values) {
+        return replace(this.compiled, values);
+    }
+
+    private Component replace(Component component, Map<String, Component> values) {
+        String slot = slotOf(component);
+        if (slot != null) {
+            Component value = values.get(slot);
+            // MiniMessage may put the style of the surrounding tags onto the slot itself, the value keeps it
+            return value == null ? Component.empty() : value.applyFallbackStyle(component.style());
+        }
+        if (!this.slotParents.contains(component)) return component;
+
+        List<Component> children = new ArrayList<>(component.children().size());
+        for (Component child : component.children()) {
+            children.add(replace(child, values));
+        }
+        return component.children(children);
+    }
+
+    private boolean markSlotParents(Component component) {
+        boolean containsSlot = slotOf(component) != null;
+        for (Component child : component.children()) {
+            containsSlot |= markSlotParents(child);
+        }
+        if (containsSlot) this.slotParents.add(component);
+        return containsSlot;
+    }
+
+    private static String slotOf(Component component) {
+        if (component instanceof TranslatableComponent translatable && translatable.key().startsWith(SLOT_KEY_PREFIX)) {
+            return translatable.key().substring(SLOT_KEY_PREFIX.length());
+        }
+        return null;
+    }
+}
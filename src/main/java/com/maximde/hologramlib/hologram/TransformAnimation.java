@@ -0,0 +1,150 @@
+package com.maximde.hologramlib.hologram;
+
+import com.github.retrooper.packetevents.util.Quaternion4f;
+import com.maximde.hologramlib.utils.Vector3F;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.joml.Quaternionf;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyframe animation of the transformation and position of a display hologram.
+ * Every keyframe is sent once and the client interpolates towards it,
+ * eased keyframes are split into a few linear steps.
+ */
+@Getter
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+public class TransformAnimation {
+
+    private final List<Keyframe> keyframes = new ArrayList<>();
+
+    /**
+     * Starts again with the first keyframe after the last one finished
+     */
+    private @Setter @Accessors(chain = true) boolean loop = false;
+
+    /**
+     * Delay in ticks when the animation should start
+     * 20 ticks = 1 second
+     */
+    private @Setter @Accessors(chain = true) long delay = 0;
+
+    /**
+     * Length in ticks of the linear steps an eased keyframe is split into,
+     * smaller values look smoother but send more packets
+     */
+    private @Setter @Accessors(chain = true) int easingStep = 4;
+
+    public TransformAnimation() {}
+
+    public TransformAnimation(boolean loop) {
+        this.loop = loop;
+    }
+
+    public TransformAnimation addKeyframe(Keyframe keyframe) {
+        this.keyframes.add(keyframe);
+        return this;
+    }
+
+    public TransformAnimation removeKeyframe(int number) {
+        this.keyframes.remove(number);
+        return this;
+    }
+
+    public enum Easing {
+        LINEAR,
+        EASE_IN,
+        EASE_OUT,
+        EASE_IN_OUT;
+
+        /**
+         * @param progress Linear progress between 0 and 1
+         * @return Eased progress between 0 and 1
+         */
+        public double apply(double progress) {
+            return switch (this) {
+                case LINEAR -> progress;
+                case EASE_IN -> progress * progress;
+                case EASE_OUT -> 1 - (1 - progress) * (1 - progress);
+                case EASE_IN_OUT -> progress < 0.5 ? 2 * progress * progress : 1 - Math.pow(-2 * progress + 2, 2) / 2;
+            };
+        }
+    }
+
+    /**
+     * Target state of the hologram after the duration of the keyframe.
+     * Values which are not set keep their current value.
+     */
+    @Getter
+    public static class Keyframe {
+
+        /**
+         * Ticks it takes to get from the previous state to this keyframe
+         */
+        private final int duration;
+
+        private @Setter @Accessors(chain = true) Easing easing = Easing.LINEAR;
+
+        private @Nullable Vector3F scale;
+        private @Nullable Vector3F translation;
+        private @Nullable Quaternion4f leftRotation;
+        private @Nullable Quaternion4f rightRotation;
+
+        /**
+         * Position relative to the location the hologram had when the animation started
+         */
+        private @Nullable Vector3F offset;
+
+        public Keyframe(int duration) {
+            if (duration < 1) {
+                throw new IllegalArgumentException("The duration of a keyframe has to be at least one tick");
+            }
+            this.duration = duration;
+        }
+
+        public Keyframe setScale(float x, float y, float z) {
+            this.scale = new Vector3F(x, y, z);
+            return this;
+        }
+
+        public Keyframe setTranslation(float x, float y, float z) {
+            this.translation = new Vector3F(x, y, z);
+            return this;
+        }
+
+        public Keyframe setLeftRotation(float x, float y, float z, float w) {
+            this.leftRotation = new Quaternion4f(x, y, z, w);
+            return this;
+        }
+
+        public Keyframe setRightRotation(float x, float y, float z, float w) {
+            this.rightRotation = new Quaternion4f(x, y, z, w);
+            return this;
+        }
+
+        /**
+         * Sets the left rotation from yaw and pitch in degrees, like {@link Hologram#setRotation(float, float)}
+         */
+        public Keyframe setRotation(float yaw, float pitch) {
+            Quaternionf rotation = new Quaternionf()
+                    .rotateY((float) Math.toRadians(yaw))
+                    .rotateX((float) Math.toRadians(pitch));
+            this.leftRotation = new Quaternion4f(rotation.x, rotation.y, rotation.z, rotation.w);
+            this.rightRotation = new Quaternion4f(0, 0, 0, 1);
+            return this;
+        }
+
+        public Keyframe setOffset(float x, float y, float z) {
+            this.offset = new Vector3F(x, y, z);
+            return this;
+        }
+
+        boolean isTransforming() {
+            return this.scale != null || this.translation != null || this.leftRotation != null || this.rightRotation != null;
+        }
+    }
+}
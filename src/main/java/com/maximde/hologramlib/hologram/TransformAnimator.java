@@ -0,0 +1,238 @@
+package com.maximde.hologramlib.hologram;
+
+import com.github.retrooper.packetevents.util.Quaternion4f;
+import com.maximde.hologramlib.utils.BukkitTasks;
+import com.maximde.hologramlib.utils.TaskHandle;
+import com.maximde.hologramlib.utils.Vector3F;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Plays the {@link TransformAnimation}s of all holograms on one shared timer.
+ * A hologram is only touched when its current keyframe step is finished, in between the client interpolates.
+ */
+public class TransformAnimator {
+
+    private final Map<Hologram<?>, Playback> playbacks = new ConcurrentHashMap<>();
+
+    private TaskHandle task;
+    private long currentTick = 0;
+
+    TransformAnimator() {
+
+    }
+
+    /**
+     * State of the keyframe a hologram is currently moving towards
+     */
+    private static final class Playback {
+        private final TransformAnimation animation;
+        private final Location origin;
+
+        /**
+         * Durations the hologram had before the animation started, the keyframes overwrite them
+         */
+        private final int teleportDuration;
+        private final int interpolationDuration;
+        private long nextTick;
+        private int keyframe = 0;
+        private int step = 0;
+        private int steps;
+        private Vector3f startScale;
+        private Vector3f startTranslation;
+        private Quaternionf startLeftRotation;
+        private Quaternionf startRightRotation;
+        private Vector3F startOffset;
+
+        private Playback(TransformAnimation animation, Location origin, long nextTick, int teleportDuration, int interpolationDuration) {
+            this.animation = animation;
+            this.origin = origin;
+            this.nextTick = nextTick;
+            this.teleportDuration = teleportDuration;
+            this.interpolationDuration = interpolationDuration;
+        }
+    }
+
+    /**
+     * Starts the animation on the hologram, replacing the animation it is currently playing.
+     * Positions of the keyframes are relative to the current location of the hologram.
+     * The teleport and interpolation durations of the hologram are restored when the animation finishes or gets stopped.
+     */
+    public synchronized void play(Hologram<?> hologram, TransformAnimation animation) {
+        if (animation.getKeyframes().isEmpty()) {
+            stop(hologram);
+            return;
+        }
+        Location location = hologram.getLocation();
+        if (location == null) {
+            throw new IllegalStateException("The hologram has to be spawned before it can be animated");
+        }
+        // A replaced animation already changed the durations, the ones from before it are kept
+        Playback previous = this.playbacks.get(hologram);
+        int teleportDuration = previous == null ? hologram.teleportDuration : previous.teleportDuration;
+        int interpolationDuration = previous == null ? hologram.interpolationDurationTransformation : previous.interpolationDuration;
+        this.playbacks.put(hologram, new Playback(animation, location.clone(), this.currentTick + Math.max(1, animation.getDelay()),
+                teleportDuration, interpolationDuration));
+        if (this.task == null) this.task = BukkitTasks.runTaskTimerAsync(this::tick, 1, 1);
+    }
+
+    public synchronized void stop(Hologram<?> hologram) {
+        Playback playback = this.playbacks.remove(hologram);
+        if (playback != null) restore(hologram, playback);
+    }
+
+    public boolean isPlaying(Hologram<?> hologram) {
+        return this.playbacks.containsKey(hologram);
+    }
+
+    public int getPlayingAnimations() {
+        return this.playbacks.size();
+    }
+
+    public synchronized void shutdown() {
+        if (this.task != null) this.task.cancel();
+        this.task = null;
+        this.playbacks.forEach(this::restore);
+        this.playbacks.clear();
+    }
+
+    private synchronized void tick() {
+        long tick = ++this.currentTick;
+        Iterator<Map.Entry<Hologram<?>, Playback>> iterator = this.playbacks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Hologram<?>, Playback> entry = iterator.next();
+            Hologram<?> hologram = entry.getKey();
+            Playback playback = entry.getValue();
+            if (hologram.isDead()) {
+                iterator.remove();
+                restore(hologram, playback);
+                continue;
+            }
+            if (tick < playback.nextTick) continue;
+
+            try {
+                if (!advance(hologram, playback, tick)) {
+                    iterator.remove();
+                    restore(hologram, playback);
+                }
+            } catch (Exception exception) {
+                iterator.remove();
+                Bukkit.getLogger().log(Level.WARNING, "Failed to play the animation of hologram " + hologram.getId(), exception);
+                restore(hologram, playback);
+            }
+        }
+
+        if (this.playbacks.isEmpty() && this.task != null) {
+            this.task.cancel();
+            this.task = null;
+        }
+    }
+
+    /**
+     * Sends the next step of the current keyframe
+     *
+     * @return false if the animation is finished
+     */
+    private boolean advance(Hologram<?> hologram, Playback playback, long tick) {
+        TransformAnimation.Keyframe keyframe = playback.animation.getKeyframes().get(playback.keyframe);
+        if (playback.step == 0) begin(hologram, playback, keyframe);
+
+        playback.step++;
+        double progress = keyframe.getEasing().apply(playback.step / (double) playback.steps);
+        int ticks = Math.max(1, Math.round(keyframe.getDuration() * playback.step / (float) playback.steps)
+                - Math.round(keyframe.getDuration() * (playback.step - 1) / (float) playback.steps));
+
+        if (keyframe.isTransforming()) {
+            hologram.setInterpolationDurationTransformation(ticks);
+            if (keyframe.getScale() != null) {
+                Vector3f scale = lerp(playback.startScale, keyframe.getScale(), progress);
+                hologram.setScale(scale.x, scale.y, scale.z);
+            }
+            if (keyframe.getTranslation() != null) {
+                Vector3f translation = lerp(playback.startTranslation, keyframe.getTranslation(), progress);
+                hologram.setTranslation(translation.x, translation.y, translation.z);
+            }
+            if (keyframe.getLeftRotation() != null) {
+                Quaternionf rotation = slerp(playback.startLeftRotation, keyframe.getLeftRotation(), progress);
+                hologram.setLeftRotation(rotation.x, rotation.y, rotation.z, rotation.w);
+            }
+            if (keyframe.getRightRotation() != null) {
+                Quaternionf rotation = slerp(playback.startRightRotation, keyframe.getRightRotation(), progress);
+                hologram.setRightRotation(rotation.x, rotation.y, rotation.z, rotation.w);
+            }
+        }
+        if (keyframe.getOffset() != null) hologram.setTeleportDuration(ticks);
+        // Only the transformation changes, the viewers stay the same
+        hologram.sendTransformNow();
+
+        if (keyframe.getOffset() != null) {
+            Vector3F start = playback.startOffset;
+            Vector3F target = keyframe.getOffset();
+            hologram.teleport(playback.origin.clone().add(
+                    start.x + (target.x - start.x) * progress,
+                    start.y + (target.y - start.y) * progress,
+                    start.z + (target.z - start.z) * progress));
+        }
+
+        playback.nextTick = tick + ticks;
+        if (playback.step < playback.steps) return true;
+
+        playback.step = 0;
+        playback.keyframe++;
+        if (playback.keyframe < playback.animation.getKeyframes().size()) return true;
+        playback.keyframe = 0;
+        return playback.animation.isLoop();
+    }
+
+    /**
+     * Sets the durations back to the ones from before the animation, only sent to the viewers if the hologram is alive
+     */
+    private void restore(Hologram<?> hologram, Playback playback) {
+        try {
+            hologram.setTeleportDuration(playback.teleportDuration);
+            hologram.setInterpolationDurationTransformation(playback.interpolationDuration);
+            hologram.sendTransformNow();
+        } catch (Exception exception) {
+            Bukkit.getLogger().log(Level.WARNING, "Failed to restore the durations of hologram " + hologram.getId(), exception);
+        }
+    }
+
+    /**
+     * Remembers the state the hologram starts the keyframe from
+     */
+    private void begin(Hologram<?> hologram, Playback playback, TransformAnimation.Keyframe keyframe) {
+        int easingStep = Math.max(1, playback.animation.getEasingStep());
+        playback.steps = keyframe.getEasing() == TransformAnimation.Easing.LINEAR
+                ? 1
+                : Math.max(1, (keyframe.getDuration() + easingStep - 1) / easingStep);
+        playback.startScale = new Vector3f(hologram.scale);
+        playback.startTranslation = new Vector3f(hologram.translation);
+        playback.startLeftRotation = toQuaternionf(hologram.leftRotation);
+        playback.startRightRotation = toQuaternionf(hologram.rightRotation);
+
+        Location location = hologram.getLocation();
+        playback.startOffset = location == null ? new Vector3F() : new Vector3F(
+                (float) (location.getX() - playback.origin.getX()),
+                (float) (location.getY() - playback.origin.getY()),
+                (float) (location.getZ() - playback.origin.getZ()));
+    }
+
+    private static Vector3f lerp(Vector3f start, Vector3F target, double progress) {
+        return new Vector3f(start).lerp(new Vector3f(target.x, target.y, target.z), (float) progress);
+    }
+
+    private static Quaternionf slerp(Quaternionf start, Quaternion4f target, double progress) {
+        return new Quaternionf(start).slerp(toQuaternionf(target), (float) progress);
+    }
+
+    private static Quaternionf toQuaternionf(Quaternion4f quaternion) {
+        return new Quaternionf(quaternion.getX(), quaternion.getY(), quaternion.getZ(), quaternion.getW());
+    }
+}
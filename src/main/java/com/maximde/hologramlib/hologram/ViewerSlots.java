@@ -0,0 +1,175 @@
+package com.maximde.hologramlib.hologram;
+
+import org.bukkit.entity.Player;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+
+/**
+ * Viewers of an entity as a growable bitset of the player slots from the {@link PlayerIndex}.
+ * Needs one bit per online player instead of a hash set entry per viewer.
+ * Viewers which have no slot (not indexed yet) are kept by UUID.
+ * <p>
+ * When a player leaves, its slot is cleared in every set before it can be given to another player.
+ */
+final class ViewerSlots {
+
+    private static final Set<ViewerSlots> ALL = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final BitSet slots = new BitSet();
+    private final Set<UUID> unindexed = new HashSet<>(0);
+    private final Set<UUID> view = new View();
+
+    ViewerSlots() {
+        ALL.add(this);
+    }
+
+    /**
+     * @return Whether the viewer was added, false if it already was a viewer
+     */
+    synchronized boolean add(UUID uuid) {
+        int slot = PlayerIndex.getSlot(uuid);
+        if (slot < 0) return this.unindexed.add(uuid);
+        if (this.slots.get(slot)) return false;
+        this.slots.set(slot);
+        return !this.unindexed.remove(uuid);
+    }
+
+    /**
+     * @return Whether the viewer was removed, false if it was no viewer
+     */
+    synchronized boolean remove(UUID uuid) {
+        boolean removed = this.unindexed.remove(uuid);
+        int slot = PlayerIndex.getSlot(uuid);
+        if (slot >= 0 && this.slots.get(slot)) {
+            this.slots.clear(slot);
+            removed = true;
+        }
+        return removed;
+    }
+
+    synchronized boolean contains(UUID uuid) {
+        int slot = PlayerIndex.getSlot(uuid);
+        return (slot >= 0 && this.slots.get(slot)) || this.unindexed.contains(uuid);
+    }
+
+    synchronized int size() {
+        return this.slots.cardinality() + this.unindexed.size();
+    }
+
+    /**
+     * @return A live view of the viewer UUIDs which cannot be modified, iterating works on a snapshot
+     */
+    Set<UUID> view() {
+        return this.view;
+    }
+
+    /**
+     * Compares the viewers with the players which should see the entity, word-wise on the slot bitsets
+     *
+     * @return The viewers which are not part of the players and the players which are no viewers yet
+     */
+    Diff diff(Collection<? extends Player> players) {
+        BitSet wanted = new BitSet();
+        Set<UUID> wantedUnindexed = new HashSet<>(0);
+        for (Player player : players) {
+            int slot = PlayerIndex.getSlot(player.getUniqueId());
+            if (slot >= 0) {
+                wanted.set(slot);
+            } else {
+                wantedUnindexed.add(player.getUniqueId());
+            }
+        }
+
+        BitSet current;
+        List<UUID> removed = new ArrayList<>();
+        List<Player> added = new ArrayList<>();
+        synchronized (this) {
+            current = (BitSet) this.slots.clone();
+            for (UUID uuid : this.unindexed) {
+                if (!wantedUnindexed.remove(uuid)) removed.add(uuid);
+            }
+        }
+
+        BitSet changed = (BitSet) current.clone();
+        changed.xor(wanted);
+        BitSet removedSlots = (BitSet) changed.clone();
+        removedSlots.and(current);
+        changed.and(wanted);
+
+        removedSlots.stream().forEach(slot -> {
+            Player player = PlayerIndex.getBySlot(slot);
+            if (player != null) removed.add(player.getUniqueId());
+        });
+        changed.stream().forEach(slot -> {
+            Player player = PlayerIndex.getBySlot(slot);
+            if (player != null) added.add(player);
+        });
+        for (Player player : players) {
+            if (wantedUnindexed.contains(player.getUniqueId())) added.add(player);
+        }
+        return new Diff(removed, added);
+    }
+
+    record Diff(List<UUID> removed, List<Player> added) {}
+
+    private synchronized List<UUID> snapshot() {
+        List<UUID> uuids = new ArrayList<>(this.slots.cardinality() + this.unindexed.size());
+        this.slots.stream().forEach(slot -> {
+            Player player = PlayerIndex.getBySlot(slot);
+            if (player != null) uuids.add(player.getUniqueId());
+        });
+        uuids.addAll(this.unindexed);
+        return uuids;
+    }
+
+    private synchronized void clearSlot(int slot) {
+        this.slots.clear(slot);
+    }
+
+    private synchronized void clearSlots() {
+        this.slots.clear();
+    }
+
+    /**
+     * Clears the slot in every set, called by the index before the slot is given to another player
+     */
+    static void releaseSlot(int slot) {
+        synchronized (ALL) {
+            ALL.forEach(viewers -> viewers.clearSlot(slot));
+        }
+    }
+
+    static void releaseAllSlots() {
+        synchronized (ALL) {
+            ALL.forEach(ViewerSlots::clearSlots);
+        }
+    }
+
+    private final class View extends AbstractSet<UUID> {
+
+        @Override
+        public Iterator<UUID> iterator() {
+            return Collections.unmodifiableList(snapshot()).iterator();
+        }
+
+        @Override
+        public int size() {
+            return ViewerSlots.this.size();
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            return object instanceof UUID uuid && ViewerSlots.this.contains(uuid);
+        }
+    }
+}
@@ -0,0 +1,874 @@
+package com.maximde.hologramlib.hologram;
+
+import com.maximde.hologramlib.utils.BukkitTasks;
+import com.maximde.hologramlib.utils.TaskHandle;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
+import org.jspecify.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+
+/**
+ * Updates the viewers of all spawned holograms and interaction boxes from one shared timer.
+ * Targets are grouped into buckets by their update period, every tick only the buckets
+ * whose period has elapsed are swept.
+ * Only spawned entities are tracked, killing an entity removes it from the engine again.
+ * <p>
+ * Tracked entities are stored in a {@link SpatialIndex}, so a sweep only has to check
+ * the entities in the cells around each player instead of every entity against every player.
+ * <p>
+ * In movement driven mode the viewers are updated per player whenever a player crosses a cell border,
+ * teleports, changes the world or joins. The periodic sweep then only runs as a slow reconciliation.
+ * <p>
+ * Every tick only runs for the configured time budget. Targets which did not fit into the budget
+ * stay in the backlog and are continued on the next tick in the order they became due.
+ * The players around the targets are looked up per batch, so the lookup is limited by the budget as well.
+ * On Folia the timer only collects and dispatches the batches, every region task checks the budget itself.
+ * Targets which moved to another cell, were just tracked or have a newly joined player close to them
+ * are handled before the backlog.
+ * <p>
+ * On Folia every batch and the deferred updates get split by region and each part runs on the thread owning that region.
+ * Player positions are never read from another region, they are recorded by the player's own thread
+ * (on movement, teleport, world change and join) and the engine only works with these snapshots.
+ * <p>
+ * The amount of holograms a single player can see can be limited. The holograms around every player get ranked
+ * by distance, their priority and whether the player is looking at them, only the best ones are allowed as viewers.
+ * Already shown holograms are preferred and only a few holograms get replaced per ranking, so the shown set
+ * changes gradually while the player moves.
+ */
+@SuppressWarnings({"unused", "UnusedReturnValue"})
+public class VisibilityEngine {
+
+    private final Map<Long, Set<VisibilityTarget>> buckets = new ConcurrentHashMap<>();
+    private final Map<VisibilityTarget, Registration> registrations = new ConcurrentHashMap<>();
+
+    /**
+     * Index of all tracked entities which have a location
+     */
+    @Getter
+    private volatile SpatialIndex<VisibilityTarget> index = new SpatialIndex<>();
+
+    private final Map<UUID, Set<VisibilityTarget>> nearbyTargets = new ConcurrentHashMap<>();
+    private final Set<VisibilityTarget> pendingTargets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Due targets in the order they became due, only accessed from the engine timer
+     */
+    private final Set<VisibilityTarget> backlog = new LinkedHashSet<>();
+
+    /**
+     * Targets which did not fit into the time budget of a region task
+     */
+    private final Queue<VisibilityTarget> carryOver = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Size of the square areas which are assumed to belong to the same Folia region
+     */
+    public static final int REGION_SECTION_SIZE = 256;
+
+    /**
+     * Whether the updates get executed on the threads owning the regions (Folia)
+     */
+    @Getter
+    private final boolean regionAware;
+
+    /**
+     * Runs a task on the thread owning the region of a location
+     */
+    private final RegionScheduler regionScheduler;
+
+    /**
+     * Last known location of every player, only used on Folia
+     */
+    private final Map<UUID, Location> playerLocations = new ConcurrentHashMap<>();
+
+    /**
+     * Capped targets every player is allowed to see, only used if a limit is set
+     */
+    private final Map<UUID, Set<VisibilityTarget>> allowedTargets = new ConcurrentHashMap<>();
+
+    /**
+     * Maximum amount of capped targets (holograms) a single player can see, 0 for no limit
+     */
+    @Getter
+    private volatile int maxVisiblePerPlayer = 0;
+
+    /**
+     * Period in ticks between two rankings of the holograms around each player
+     */
+    @Getter
+    private volatile int rankingPeriod = 10;
+
+    /**
+     * Maximum amount of shown holograms which get replaced by better ranked ones per ranking
+     */
+    @Getter
+    private volatile int maxSwapsPerRanking = 4;
+
+    /**
+     * Distance in blocks one priority point is worth while ranking
+     */
+    @Getter
+    private volatile double priorityWeight = 16;
+
+    /**
+     * Distance in blocks a hologram in front of the player is preferred over others
+     */
+    @Getter
+    private volatile double lookBonus = 8;
+
+    /**
+     * Distance in blocks an already shown hologram is preferred over others, prevents swapping back and forth
+     */
+    @Getter
+    private volatile double shownBonus = 4;
+
+    private static final double LOOK_COSINE = Math.cos(Math.toRadians(35));
+    private final LongAdder suppressedToggles = new LongAdder();
+
+    /**
+     * Updates of holograms in deferred mode with the target they belong to, run once per tick by their own timer
+     */
+    private final Map<Runnable, VisibilityTarget> deferredUpdates = new ConcurrentHashMap<>();
+    private final LongAdder coalescedUpdates = new LongAdder();
+
+    private TaskHandle task;
+    private TaskHandle deferredTask;
+    private long currentTick = 0;
+
+    /**
+     * Largest render distance of all tracked targets, used as search radius around moving players
+     */
+    @Getter
+    private volatile double maxRenderDistance = 0;
+
+    @Getter
+    private volatile boolean movementDriven = false;
+
+    /**
+     * In movement driven mode the update period of every target gets multiplied by this value
+     */
+    @Getter
+    private volatile int fallbackPeriodMultiplier = 5;
+
+    /**
+     * Duration of the last sweep in nanoseconds
+     */
+    @Getter
+    private volatile long lastSweepNanos = 0;
+
+    /**
+     * Amount of targets which were updated during the last sweep
+     */
+    @Getter
+    private volatile int lastSweepSize = 0;
+
+    /**
+     * Amount of targets which are due but were not updated yet because the time budget was used up
+     */
+    @Getter
+    private volatile int backlogSize = 0;
+
+    /**
+     * Maximum time in nanoseconds a single tick may spend on updating viewers, 0 for no limit
+     */
+    @Getter
+    private volatile long tickBudgetNanos = 2_000_000L;
+
+    /**
+     * Amount of targets whose candidates are looked up together before the budget is checked again
+     */
+    @Getter
+    private volatile int batchSize = 32;
+
+    VisibilityEngine() {
+        this(BukkitTasks.isFolia(), BukkitTasks::runTask);
+        start();
+    }
+
+    /**
+     * Creates an engine without starting the timer
+     * @param regionAware Whether the updates get executed on the threads owning the regions
+     * @param regionScheduler Runs the updates of a region, only used if region aware
+     */
+    VisibilityEngine(boolean regionAware, RegionScheduler regionScheduler) {
+        this.regionAware = regionAware;
+        this.regionScheduler = regionScheduler;
+    }
+
+    /**
+     * Starts the shared timer and the timer of the deferred updates.
+     * The deferred updates read the world and the players, so they run on the main thread
+     * (on Folia the global region, which hands them to the regions of the targets) instead of the async engine timer.
+     * On Folia the locations of the players which are already online get recorded by their own threads,
+     * otherwise they would be unknown until they move after a reload.
+     */
+    void start() {
+        this.task = BukkitTasks.runTaskTimerAsync(this::tick, 1L, 1L);
+        this.deferredTask = BukkitTasks.runTaskTimer(this::runDeferredUpdates, 1L, 1L);
+        if (this.regionAware) Bukkit.getOnlinePlayers().forEach(this::refreshPlayerLater);
+    }
+
+    /**
+     * Runs a task on the thread owning the region of the location
+     */
+    @FunctionalInterface
+    interface RegionScheduler {
+        void run(Runnable task, Location location);
+    }
+
+    /**
+     * Starts updating the viewers of the target.
+     * Calling this again for an already tracked target replaces the old registration.
+     *
+     * @return A handle which stops tracking the target when cancelled
+     */
+    public TaskHandle track(VisibilityTarget target) {
+        Registration registration = new Registration(target, Math.max(1L, target.getUpdateTaskPeriod()));
+        Registration previous = this.registrations.put(target, registration);
+        if (previous != null) previous.removeFromBucket();
+        this.buckets.computeIfAbsent(registration.period, period -> ConcurrentHashMap.newKeySet()).add(target);
+        this.maxRenderDistance = Math.max(this.maxRenderDistance, Math.sqrt(target.getDespawnDistanceSquared()));
+        if (previous == null) this.pendingTargets.add(target);
+        relocate(target);
+        return registration;
+    }
+
+    /**
+     * Recalculates the search radius around players after the render distance of the target changed
+     * and updates the target before the backlog on the next tick.
+     */
+    public void renderDistanceChanged(VisibilityTarget target) {
+        if (!this.registrations.containsKey(target)) return;
+        double maxRenderDistance = 0;
+        for (VisibilityTarget tracked : this.registrations.keySet()) {
+            maxRenderDistance = Math.max(maxRenderDistance, Math.sqrt(tracked.getDespawnDistanceSquared()));
+        }
+        this.maxRenderDistance = maxRenderDistance;
+        this.pendingTargets.add(target);
+    }
+
+    public void untrack(VisibilityTarget target) {
+        Registration registration = this.registrations.remove(target);
+        if (registration != null) registration.removeFromBucket();
+        this.index.remove(target);
+    }
+
+    /**
+     * Moves the target to its current location inside the index.
+     * Has to be called whenever a tracked target changes its location.
+     * A target which entered another cell gets updated before the backlog on the next tick.
+     */
+    public void relocate(VisibilityTarget target) {
+        if (!this.registrations.containsKey(target)) return;
+        Location location = target.getLocation();
+        if (location == null || location.getWorld() == null) {
+            this.index.remove(target);
+        } else if (this.index.put(target, location)) {
+            this.pendingTargets.add(target);
+        }
+    }
+
+    /**
+     * Same as {@link #relocate(VisibilityTarget)} for many targets, the index is only locked once
+     */
+    public void relocateAll(Collection<? extends VisibilityTarget> targets) {
+        Map<VisibilityTarget, Location> locations = new HashMap<>();
+        for (VisibilityTarget target : targets) {
+            if (!this.registrations.containsKey(target)) continue;
+            Location location = target.getLocation();
+            if (location == null || location.getWorld() == null) {
+                this.index.remove(target);
+            } else {
+                locations.put(target, location);
+            }
+        }
+        this.pendingTargets.addAll(this.index.putAll(locations));
+    }
+
+    /**
+     * Updates all targets around the location before the backlog on the next tick
+     */
+    public void prioritizeNear(Location location) {
+        this.index.forEachNear(location, this.maxRenderDistance, this.pendingTargets::add);
+    }
+
+    /**
+     * Enables or disables the movement driven mode.
+     * Player movement is only processed while this is enabled.
+     */
+    public VisibilityEngine setMovementDriven(boolean movementDriven) {
+        this.movementDriven = movementDriven;
+        if (!movementDriven) this.nearbyTargets.clear();
+        return this;
+    }
+
+    public VisibilityEngine setFallbackPeriodMultiplier(int fallbackPeriodMultiplier) {
+        this.fallbackPeriodMultiplier = Math.max(1, fallbackPeriodMultiplier);
+        return this;
+    }
+
+    /**
+     * Sets the maximum time a single tick may spend on updating viewers.
+     *
+     * @param milliseconds The budget in milliseconds, 0 or less disables the budget
+     */
+    public VisibilityEngine setTickBudgetMillis(double milliseconds) {
+        this.tickBudgetNanos = Math.max(0L, (long) (milliseconds * 1_000_000D));
+        return this;
+    }
+
+    /**
+     * Limits the amount of holograms a single player can see.
+     * The interaction box of a hologram is only shown while the hologram is, standalone interaction boxes are not limited.
+     *
+     * @param maxVisiblePerPlayer The limit, 0 or less disables it
+     */
+    public VisibilityEngine setMaxVisiblePerPlayer(int maxVisiblePerPlayer) {
+        this.maxVisiblePerPlayer = Math.max(0, maxVisiblePerPlayer);
+        if (this.maxVisiblePerPlayer == 0) this.allowedTargets.clear();
+        return this;
+    }
+
+    public VisibilityEngine setRankingPeriod(int rankingPeriod) {
+        this.rankingPeriod = Math.max(1, rankingPeriod);
+        return this;
+    }
+
+    public VisibilityEngine setMaxSwapsPerRanking(int maxSwapsPerRanking) {
+        this.maxSwapsPerRanking = Math.max(1, maxSwapsPerRanking);
+        return this;
+    }
+
+    public VisibilityEngine setPriorityWeight(double priorityWeight) {
+        this.priorityWeight = priorityWeight;
+        return this;
+    }
+
+    public VisibilityEngine setLookBonus(double lookBonus) {
+        this.lookBonus = lookBonus;
+        return this;
+    }
+
+    public VisibilityEngine setShownBonus(double shownBonus) {
+        this.shownBonus = shownBonus;
+        return this;
+    }
+
+    public VisibilityEngine setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+        return this;
+    }
+
+    /**
+     * Updates all targets around the player for this single player.
+     * Targets which were close to the player's previous position are updated as well,
+     * so the player stops seeing targets it moved away from.
+     *
+     * @param player The player which moved
+     * @param location The new location of the player
+     */
+    public void refreshPlayer(Player player, Location location) {
+        if (location.getWorld() == null) return;
+
+        Set<VisibilityTarget> nearby = new HashSet<>();
+        this.index.forEachNear(location, this.maxRenderDistance, nearby::add);
+        Set<VisibilityTarget> previous = this.nearbyTargets.put(player.getUniqueId(), nearby);
+
+        if (previous != null) {
+            for (VisibilityTarget target : previous) {
+                if (!nearby.contains(target)) updateViewer(target, player, location);
+            }
+        }
+        for (VisibilityTarget target : nearby) {
+            updateViewer(target, player, location);
+        }
+    }
+
+    /**
+     * Refreshes the player on the next tick, used for teleports and joins
+     * where the new position is only applied after the event.
+     * Outside of the movement driven mode the targets around the player are prioritized instead.
+     */
+    public void refreshPlayerLater(Player player) {
+        BukkitTasks.runTaskLater(() -> {
+            if (!player.isOnline()) return;
+            Location location = player.getLocation();
+            recordLocation(player, location);
+            if (this.movementDriven) {
+                refreshPlayer(player, location);
+            } else {
+                prioritizeNear(location);
+            }
+        }, player, 1L);
+    }
+
+    public void forgetPlayer(Player player) {
+        this.nearbyTargets.remove(player.getUniqueId());
+        this.playerLocations.remove(player.getUniqueId());
+        this.allowedTargets.remove(player.getUniqueId());
+    }
+
+    /**
+     * Checks the per player limit, the range of the target has to be checked separately.
+     * Players which were not ranked yet get ranked immediately.
+     *
+     * @return Whether the player is allowed to see the target
+     */
+    public boolean isAllowed(VisibilityTarget target, Player player, Location playerLocation) {
+        if (this.maxVisiblePerPlayer <= 0 || !target.isCapped()) return true;
+        Set<VisibilityTarget> allowed = this.allowedTargets.get(player.getUniqueId());
+        if (allowed == null) allowed = rankPlayer(player, playerLocation);
+        return allowed.contains(target);
+    }
+
+    /**
+     * Ranks the holograms around the player and stores the ones the player is allowed to see.
+     * Holograms which got added or removed are updated before the backlog on the next tick.
+     */
+    private Set<VisibilityTarget> rankPlayer(Player player, Location location) {
+        Set<VisibilityTarget> previous = this.allowedTargets.getOrDefault(player.getUniqueId(), Collections.emptySet());
+        List<RankedTarget> ranked = new ArrayList<>();
+        Vector direction = location.getDirection();
+        int shownInRange = 0;
+
+        for (VisibilityTarget target : this.index.getNear(location, this.maxRenderDistance)) {
+            Location targetLocation = target.getLocation();
+            // Holograms the player can never see must not take one of its slots
+            if (!target.isCapped() || targetLocation == null || !target.isEligible(player)) continue;
+
+            boolean shown = previous.contains(target);
+            double distanceSquared = targetLocation.distanceSquared(location);
+            double range = shown ? target.getDespawnDistanceSquared() : target.getMaxPlayerRenderDistanceSquared();
+            if (distanceSquared > range) continue;
+
+            double distance = Math.sqrt(distanceSquared);
+            double score = distance - target.getPriority() * this.priorityWeight;
+            if (shown) {
+                score -= this.shownBonus;
+                shownInRange++;
+            }
+            if (distance > 0) {
+                Vector toTarget = targetLocation.toVector().subtract(location.toVector()).multiply(1 / distance);
+                if (toTarget.dot(direction) >= LOOK_COSINE) score -= this.lookBonus;
+            }
+            ranked.add(new RankedTarget(target, score, shown));
+        }
+
+        ranked.sort(Comparator.comparingDouble(RankedTarget::score));
+
+        int limit = this.maxVisiblePerPlayer;
+        int newcomers = Math.max(0, limit - shownInRange) + this.maxSwapsPerRanking;
+        Set<VisibilityTarget> allowed = ConcurrentHashMap.newKeySet();
+        for (RankedTarget entry : ranked) {
+            if (allowed.size() >= limit) break;
+            if (!entry.shown()) {
+                if (newcomers <= 0) continue;
+                newcomers--;
+            }
+            allowed.add(entry.target());
+        }
+
+        this.allowedTargets.put(player.getUniqueId(), allowed);
+        for (VisibilityTarget target : allowed) {
+            if (!previous.contains(target)) prioritizeWithFollowers(target);
+        }
+        for (VisibilityTarget target : previous) {
+            if (!allowed.contains(target)) prioritizeWithFollowers(target);
+        }
+        return allowed;
+    }
+
+    private void prioritizeWithFollowers(VisibilityTarget target) {
+        this.pendingTargets.add(target);
+        this.pendingTargets.addAll(target.getFollowers());
+    }
+
+    private void rankPlayers() {
+        for (World world : Bukkit.getWorlds()) {
+            forEachPlayer(world.getUID(), (player, location) -> {
+                try {
+                    rankPlayer(player, location);
+                } catch (Exception exception) {
+                    Bukkit.getLogger().log(Level.WARNING, "Failed to rank the holograms around a player", exception);
+                }
+            });
+        }
+    }
+
+    private record RankedTarget(VisibilityTarget target, double score, boolean shown) {}
+
+    /**
+     * Stores the location of the player for the region aware mode.
+     * Has to be called from the thread owning the player.
+     */
+    public void recordLocation(Player player, Location location) {
+        if (!this.regionAware) return;
+        this.playerLocations.put(player.getUniqueId(), location.clone());
+    }
+
+    /**
+     * Returns the location of the player which is safe to use from the current thread.
+     * On Folia this is the last recorded location, which is null if nothing was recorded yet.
+     */
+    public @Nullable Location getPlayerLocation(Player player) {
+        if (!this.regionAware) return player.getLocation();
+        return this.playerLocations.get(player.getUniqueId());
+    }
+
+    /**
+     * @return The players which are in the world, on Folia based on the recorded locations
+     */
+    public List<Player> getPlayers(World world) {
+        if (!this.regionAware) return world.getPlayers();
+        List<Player> players = new ArrayList<>();
+        forEachPlayer(world.getUID(), (player, location) -> players.add(player));
+        return players;
+    }
+
+    private void forEachPlayer(UUID worldId, BiConsumer<Player, Location> action) {
+        if (!this.regionAware) {
+            World world = Bukkit.getWorld(worldId);
+            if (world == null) return;
+            for (Player player : world.getPlayers()) {
+                action.accept(player, player.getLocation());
+            }
+            return;
+        }
+
+        this.playerLocations.forEach((uuid, location) -> {
+            World world = location.getWorld();
+            if (world == null || !world.getUID().equals(worldId)) return;
+            Player player = PlayerIndex.get(uuid);
+            if (player != null) action.accept(player, location);
+        });
+    }
+
+    private void updateViewer(VisibilityTarget target, Player player, Location location) {
+        try {
+            target.updateViewer(player, location);
+        } catch (Exception exception) {
+            Bukkit.getLogger().log(Level.WARNING, "Failed to update a viewer of a hologram", exception);
+        }
+    }
+
+    void recordSuppressedToggle() {
+        this.suppressedToggles.increment();
+    }
+
+    /**
+     * @return How often a viewer was kept by the despawn band of any entity instead of being removed and added again
+     */
+    public long getSuppressedViewerToggles() {
+        return this.suppressedToggles.sum();
+    }
+
+    /**
+     * Schedules the update for the next tick, an update which is already scheduled is not added twice.
+     * The update runs on the main thread, on Folia on the thread owning the region of the target.
+     */
+    void deferUpdate(Runnable update, VisibilityTarget target) {
+        if (this.deferredUpdates.putIfAbsent(update, target) != null) this.coalescedUpdates.increment();
+    }
+
+    /**
+     * @return How many update calls were merged into an update that was already scheduled
+     */
+    public long getCoalescedUpdates() {
+        return this.coalescedUpdates.sum();
+    }
+
+    /**
+     * Runs the deferred updates, called by their timer on the main thread (on Folia the global region)
+     */
+    void runDeferredUpdates() {
+        Map<RegionKey, List<Runnable>> regions = new HashMap<>();
+        Map<RegionKey, Location> regionLocations = new HashMap<>();
+
+        Iterator<Map.Entry<Runnable, VisibilityTarget>> iterator = this.deferredUpdates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Runnable, VisibilityTarget> entry = iterator.next();
+            iterator.remove();
+            Location location = this.regionAware ? entry.getValue().getLocation() : null;
+            if (location == null || location.getWorld() == null) {
+                runDeferredUpdate(entry.getKey());
+                continue;
+            }
+            RegionKey key = RegionKey.of(location);
+            regions.computeIfAbsent(key, regionKey -> new ArrayList<>()).add(entry.getKey());
+            regionLocations.putIfAbsent(key, location);
+        }
+
+        regions.forEach((key, updates) -> this.regionScheduler.run(() -> updates.forEach(this::runDeferredUpdate),
+                regionLocations.get(key)));
+    }
+
+    private void runDeferredUpdate(Runnable update) {
+        try {
+            update.run();
+        } catch (Exception exception) {
+            Bukkit.getLogger().log(Level.WARNING, "Failed to run a deferred hologram update", exception);
+        }
+    }
+
+    public boolean isTracked(VisibilityTarget target) {
+        return this.registrations.containsKey(target);
+    }
+
+    public int getTrackedCount() {
+        return this.registrations.size();
+    }
+
+    public double getLastSweepMillis() {
+        return this.lastSweepNanos / 1_000_000D;
+    }
+
+    /**
+     * Rebuilds the index with a new cell size (in blocks).
+     * Smaller cells are faster for short render distances, bigger cells for long ones.
+     */
+    public synchronized void setCellSize(int cellSize) {
+        SpatialIndex<VisibilityTarget> newIndex = new SpatialIndex<>(cellSize);
+        for (VisibilityTarget target : this.registrations.keySet()) {
+            Location location = target.getLocation();
+            if (location != null && location.getWorld() != null) newIndex.put(target, location);
+        }
+        this.index = newIndex;
+    }
+
+    public int getCellSize() {
+        return this.index.getCellSize();
+    }
+
+    /**
+     * Stops the shared timer and forgets all tracked targets
+     */
+    public void shutdown() {
+        if (this.task != null) this.task.cancel();
+        if (this.deferredTask != null) this.deferredTask.cancel();
+        this.task = null;
+        this.deferredTask = null;
+        this.deferredUpdates.clear();
+        this.registrations.clear();
+        this.buckets.clear();
+        this.index.clear();
+        this.nearbyTargets.clear();
+        this.pendingTargets.clear();
+        this.backlog.clear();
+        this.carryOver.clear();
+        this.playerLocations.clear();
+        this.allowedTargets.clear();
+        this.backlogSize = 0;
+    }
+
+    void tick() {
+        long tick = ++this.currentTick;
+        long start = System.nanoTime();
+        long multiplier = this.movementDriven ? this.fallbackPeriodMultiplier : 1L;
+
+        if (this.maxVisiblePerPlayer > 0 && tick % this.rankingPeriod == 0) rankPlayers();
+
+        for (Map.Entry<Long, Set<VisibilityTarget>> bucket : this.buckets.entrySet()) {
+            long period = bucket.getKey();
+            if (tick % (period * multiplier) != 0) continue;
+
+            for (VisibilityTarget target : bucket.getValue()) {
+                if (target.isDead()) {
+                    untrack(target);
+                    continue;
+                }
+                long targetPeriod = Math.max(1L, target.getUpdateTaskPeriod());
+                if (targetPeriod != period) {
+                    Registration registration = this.registrations.get(target);
+                    if (registration != null) registration.moveToBucket(targetPeriod);
+                    continue;
+                }
+                this.backlog.add(target);
+            }
+        }
+
+        VisibilityTarget carried;
+        while ((carried = this.carryOver.poll()) != null) {
+            this.backlog.add(carried);
+        }
+
+        if (this.backlog.isEmpty() && this.pendingTargets.isEmpty()) return;
+
+        // On Folia this only limits collecting and dispatching the batches,
+        // the updates themselves are limited by the budget of each region task
+        long budget = this.tickBudgetNanos;
+        int updated = 0;
+        while (!this.backlog.isEmpty() || !this.pendingTargets.isEmpty()) {
+            Set<VisibilityTarget> batch = nextBatch();
+            if (!batch.isEmpty()) {
+                // Only the batch is looked up, targets which do not fit into the budget cost nothing this tick
+                Map<VisibilityTarget, List<Player>> candidates = collectCandidates(batch);
+                if (this.regionAware) {
+                    dispatchByRegion(batch, candidates);
+                } else {
+                    updateBatch(batch, candidates);
+                }
+                updated += batch.size();
+            }
+            if (budget > 0 && System.nanoTime() - start >= budget) break;
+        }
+
+        this.lastSweepNanos = System.nanoTime() - start;
+        this.lastSweepSize = updated;
+        this.backlogSize = this.backlog.size() + this.pendingTargets.size();
+    }
+
+    /**
+     * Takes the next targets to update, prioritized targets first and then the backlog in round-robin order
+     */
+    private Set<VisibilityTarget> nextBatch() {
+        Set<VisibilityTarget> batch = new LinkedHashSet<>();
+        int size = this.batchSize;
+
+        Iterator<VisibilityTarget> pending = this.pendingTargets.iterator();
+        while (batch.size() < size && pending.hasNext()) {
+            VisibilityTarget target = pending.next();
+            pending.remove();
+            this.backlog.remove(target);
+            if (this.registrations.containsKey(target) && !target.isDead()) batch.add(target);
+        }
+
+        Iterator<VisibilityTarget> queued = this.backlog.iterator();
+        while (batch.size() < size && queued.hasNext()) {
+            VisibilityTarget target = queued.next();
+            queued.remove();
+            if (this.registrations.containsKey(target) && !target.isDead()) batch.add(target);
+        }
+        return batch;
+    }
+
+    private void updateBatch(Set<VisibilityTarget> batch, Map<VisibilityTarget, List<Player>> candidates) {
+        for (VisibilityTarget target : batch) {
+            updateTarget(target, candidates);
+        }
+    }
+
+    /**
+     * Splits the batch by region and updates every part on the thread owning its region.
+     * Targets which do not fit into the budget of their region task are carried over to the next tick.
+     */
+    private void dispatchByRegion(Set<VisibilityTarget> batch, Map<VisibilityTarget, List<Player>> candidates) {
+        Map<RegionKey, List<VisibilityTarget>> regions = new HashMap<>();
+        Map<RegionKey, Location> regionLocations = new HashMap<>();
+
+        for (VisibilityTarget target : batch) {
+            Location location = target.getLocation();
+            if (location == null || location.getWorld() == null) continue;
+            RegionKey key = RegionKey.of(location);
+            regions.computeIfAbsent(key, regionKey -> new ArrayList<>()).add(target);
+            regionLocations.putIfAbsent(key, location);
+        }
+
+        regions.forEach((key, targets) -> this.regionScheduler.run(() -> {
+            long start = System.nanoTime();
+            long budget = this.tickBudgetNanos;
+            for (int i = 0; i < targets.size(); i++) {
+                if (budget > 0 && i > 0 && System.nanoTime() - start >= budget) {
+                    this.carryOver.addAll(targets.subList(i, targets.size()));
+                    return;
+                }
+                updateTarget(targets.get(i), candidates);
+            }
+        }, regionLocations.get(key)));
+    }
+
+    private void updateTarget(VisibilityTarget target, Map<VisibilityTarget, List<Player>> candidates) {
+        try {
+            target.updateAffectedPlayers(candidates.getOrDefault(target, Collections.emptyList()));
+        } catch (Exception exception) {
+            Bukkit.getLogger().log(Level.WARNING, "Failed to update the viewers of a hologram", exception);
+        }
+    }
+
+    private record RegionKey(UUID world, int x, int z) {
+
+        private static RegionKey of(Location location) {
+            return new RegionKey(location.getWorld().getUID(),
+                    Math.floorDiv(location.getBlockX(), REGION_SECTION_SIZE),
+                    Math.floorDiv(location.getBlockZ(), REGION_SECTION_SIZE));
+        }
+    }
+
+    /**
+     * Looks up the due targets around every player of the affected worlds.
+     *
+     * @return The players which are in range of each target
+     */
+    private Map<VisibilityTarget, List<Player>> collectCandidates(Set<VisibilityTarget> dueTargets) {
+        Map<UUID, Double> radiusByWorld = new HashMap<>();
+
+        for (VisibilityTarget target : dueTargets) {
+            Location location = target.getLocation();
+            if (location == null || location.getWorld() == null) continue;
+            double radius = Math.sqrt(target.getDespawnDistanceSquared());
+            radiusByWorld.merge(location.getWorld().getUID(), radius, Math::max);
+        }
+
+        Map<VisibilityTarget, List<Player>> candidates = new HashMap<>();
+        SpatialIndex<VisibilityTarget> index = this.index;
+
+        radiusByWorld.forEach((worldId, radius) -> forEachPlayer(worldId, (player, playerLocation) ->
+                index.forEachNear(worldId, playerLocation.getX(), playerLocation.getY(), playerLocation.getZ(), radius, target -> {
+                    if (dueTargets.contains(target)) {
+                        candidates.computeIfAbsent(target, key -> new ArrayList<>()).add(player);
+                    }
+                })));
+
+        return candidates;
+    }
+
+    private class Registration implements TaskHandle {
+        private final VisibilityTarget target;
+        private volatile long period;
+        private volatile boolean cancelled = false;
+
+        private Registration(VisibilityTarget target, long period) {
+            this.target = target;
+            this.period = period;
+        }
+
+        private synchronized void removeFromBucket() {
+            this.cancelled = true;
+            Set<VisibilityTarget> bucket = buckets.get(this.period);
+            if (bucket != null) bucket.remove(this.target);
+        }
+
+        /**
+         * Moves the target to the bucket of its new update period.
+         * The registration stays the same, so the handle the entity holds keeps working.
+         */
+        private synchronized void moveToBucket(long period) {
+            if (this.cancelled || this.period == period) return;
+            Set<VisibilityTarget> bucket = buckets.get(this.period);
+            if (bucket != null) bucket.remove(this.target);
+            this.period = period;
+            buckets.computeIfAbsent(period, key -> ConcurrentHashMap.newKeySet()).add(this.target);
+        }
+
+        @Override
+        public void cancel() {
+            if (this.cancelled) return;
+            if (registrations.remove(this.target, this)) index.remove(this.target);
+            removeFromBucket();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.maximde.hologramlib.hologram;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.ApiStatus;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Internal view on a hologram or interaction box which is driven by the {@link VisibilityEngine}.
+ * Do not implement this yourself, it is only exposed through the internal access of the entities.
+ */
+@ApiStatus.Internal
+public interface VisibilityTarget {
+
+    /**
+     * Recalculates which players are able to see the entity
+     */
+    void updateAffectedPlayers();
+
+    /**
+     * Recalculates which players are able to see the entity
+     * @param candidates Players which are close enough to possibly see the entity
+     */
+    void updateAffectedPlayers(Collection<? extends Player> candidates);
+
+    /**
+     * Adds or removes a single player as viewer, depending on whether the player
+     * is allowed to see the entity from the given position
+     */
+    void updateViewer(Player player, Location playerLocation);
+
+    /**
+     * Whether the render mode and the blacklist allow the player to see the entity at all,
+     * ignoring the range and the per player limit
+     */
+    boolean isEligible(Player player);
+
+    /**
+     * Period in ticks between two viewer updates
+     */
+    long getUpdateTaskPeriod();
+
+    double getMaxPlayerRenderDistanceSquared();
+
+    /**
+     * Squared distance at which viewers are removed, at least {@link #getMaxPlayerRenderDistanceSquared()}
+     */
+    double getDespawnDistanceSquared();
+
+    @Nullable Location getLocation();
+
+    /**
+     * Higher values are preferred when the amount of visible entities per player is limited
+     */
+    int getPriority();
+
+    /**
+     * Whether the entity counts towards the per player limit of visible entities
+     */
+    boolean isCapped();
+
+    /**
+     * Targets whose visibility follows the per player limit of this target, for example the interaction box of a hologram.
+     * They get updated together with this target when the limit allows or drops a player.
+     */
+    default Collection<? extends VisibilityTarget> getFollowers() {
+        return Collections.emptyList();
+    }
+
+    boolean isDead();
+}
@@ -3,12 +3,15 @@ package com.maximde.hologramlib.hologram.custom;
 import com.maximde.hologramlib.hologram.ItemHologram;
 import com.maximde.hologramlib.hologram.RenderMode;
 import com.maximde.hologramlib.hologram.TextHologram;
+import com.maximde.hologramlib.utils.MiniMessage;
 import com.maximde.hologramlib.utils.PlayerHeadComponent;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import net.kyori.adventure.text.Component;
 import org.bukkit.Location;
 import org.bukkit.entity.Display;
 import org.bukkit.entity.Player;
@@ -17,12 +20,25 @@ import org.jetbrains.annotations.ApiStatus;
 
 import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 
 @Getter
 @ApiStatus.Experimental
 public class LeaderboardHologram {
 
-    private static final Map<String, LeaderboardHologram> hologramIdToLeaderboard = new WeakHashMap<>();
+    /**
+     * Leaderboards by the entity id of their text hologram, read by the packet listeners.
+     * Entries are removed by {@link #unregister()}.
+     */
+    private static final Map<Integer, LeaderboardHologram> leaderboardsByEntityId = new ConcurrentHashMap<>();
+
+    /**
+     * Leaderboards by the id of their text hologram
+     */
+    private static final Map<String, LeaderboardHologram> leaderboardsByTextHologramId = new ConcurrentHashMap<>();
+
+    private static final Pattern HEAD_TAG_PATTERN = Pattern.compile("<head:[^>]+>");
 
     private final String baseId;
     private final TextHologram textHologram;
@@ -43,6 +59,15 @@ public class LeaderboardHologram {
     @Accessors(chain = true)
     private LeaderboardOptions options;
 
+    /**
+     * Current text for java players together with the same text without player heads for bedrock players,
+     * computed once on every text change
+     */
+    @Getter(AccessLevel.NONE)
+    private volatile BedrockVariant bedrockVariant;
+
+    private record BedrockVariant(Component javaText, Component bedrockText) {}
+
     /**
      * Creates a leaderboard with the specified options and ID.
      *
@@ -57,7 +82,8 @@ public class LeaderboardHologram {
         this.textHologram = new TextHologram(baseId + "_text", RenderMode.ALL);
         configureTextHologram();
 
-        hologramIdToLeaderboard.put(textHologram.getId(), this);
+        leaderboardsByEntityId.put(textHologram.getEntityID(), this);
+        leaderboardsByTextHologramId.put(textHologram.getId(), this);
 
         if (options.leaderboardType() == LeaderboardType.TOP_PLAYER_HEAD) {
             this.firstPlaceHead = new ItemHologram(baseId + "_head", RenderMode.ALL);
@@ -72,7 +98,47 @@ public class LeaderboardHologram {
      * @return The associated LeaderboardHologram, or null if not found
      */
     public static LeaderboardHologram getLeaderboardByTextHologramId(String textHologramId) {
-        return hologramIdToLeaderboard.get(textHologramId);
+        return leaderboardsByTextHologramId.get(textHologramId);
+    }
+
+    /**
+     * Gets the LeaderboardHologram whose text hologram has the entity id.
+     * Used internally for bedrock player filtering.
+     *
+     * @return The associated LeaderboardHologram, or null if not found
+     */
+    public static LeaderboardHologram getLeaderboardByEntityId(int entityId) {
+        return leaderboardsByEntityId.get(entityId);
+    }
+
+    /**
+     * Returns the text without player heads for bedrock players.
+     * The current text of the leaderboard is filtered only once per change, other texts are filtered on every call.
+     *
+     * @param javaText Text which would be sent to java players
+     */
+    @ApiStatus.Internal
+    public Component getBedrockText(Component javaText) {
+        BedrockVariant variant = this.bedrockVariant;
+        if (variant != null && variant.javaText().equals(javaText)) return variant.bedrockText();
+        return filterHeads(net.kyori.adventure.text.minimessage.MiniMessage.miniMessage().serialize(javaText), javaText);
+    }
+
+    private void updateBedrockVariant(String text) {
+        if (!options.bedrockSupportEnabled()) {
+            this.bedrockVariant = null;
+            return;
+        }
+        Component javaText = textHologram.getTextAsComponent();
+        this.bedrockVariant = new BedrockVariant(javaText, filterHeads(textHologram.replaceFontImages(text), javaText));
+    }
+
+    /**
+     * @return The text parsed without head tags, or the unfiltered text if it has no head tags
+     */
+    private static Component filterHeads(String text, Component unfiltered) {
+        String filtered = HEAD_TAG_PATTERN.matcher(text).replaceAll("");
+        return filtered.equals(text) ? unfiltered : MiniMessage.get(filtered);
     }
 
     protected void validateId(String id) {
@@ -300,7 +366,7 @@ public class LeaderboardHologram {
         return text.replaceAll("<[^>]+>", "");
     }
 
-    private void updateFirstPlaceHead() {
+    private void updateFirstPlaceHead(boolean now) {
         if (options.leaderboardType() != LeaderboardType.TOP_PLAYER_HEAD) {
             return;
         }
@@ -328,7 +394,11 @@ public class LeaderboardHologram {
 
         if (!firstPlaceHead.isDead() && baseLocation != null) {
             firstPlaceHead.teleport(baseLocation);
-            firstPlaceHead.update();
+            if (now) {
+                firstPlaceHead.updateNow();
+            } else {
+                firstPlaceHead.update();
+            }
         }
     }
 
@@ -337,19 +407,32 @@ public class LeaderboardHologram {
      * Call this after modifying scores to refresh the visual display.
      */
     public void update() {
+        update(false);
+    }
+
+    /**
+     * @param now Whether the holograms are updated right away, even in deferred update mode.
+     *            Used while spawning, so the viewers are added inside the spawn bundle.
+     */
+    private void update(boolean now) {
         if (baseLocation == null) {
             return;
         }
 
         String leaderboardText = buildLeaderboardText();
         textHologram.setMiniMessageText(leaderboardText);
+        updateBedrockVariant(leaderboardText);
 
         if (!textHologram.isDead()) {
-            textHologram.update();
+            if (now) {
+                textHologram.updateNow();
+            } else {
+                textHologram.update();
+            }
         }
 
         if (options.leaderboardType() == LeaderboardType.TOP_PLAYER_HEAD) {
-            updateFirstPlaceHead();
+            updateFirstPlaceHead(now);
         }
     }
 
@@ -376,13 +459,13 @@ public class LeaderboardHologram {
 
         textHologram.getInternalAccess().spawn(location, ignorePitchYaw);
 
-        update();
+        update(true);
 
         if (options.leaderboardType() == LeaderboardType.TOP_PLAYER_HEAD
                 && firstPlaceHead != null
                 && firstPlaceHead.isDead()) {
             firstPlaceHead.getInternalAccess().spawn(location, ignorePitchYaw);
-            firstPlaceHead.update();
+            firstPlaceHead.updateNow();
         }
 
         return this;
@@ -538,6 +621,16 @@ public class LeaderboardHologram {
         return textHologram.isDead();
     }
 
+    /**
+     * Removes the leaderboard from the lookups of the packet listeners, so it can be garbage collected.
+     * Called by the HologramManager when the leaderboard gets removed.
+     */
+    @ApiStatus.Internal
+    public void unregister() {
+        leaderboardsByEntityId.remove(textHologram.getEntityID(), this);
+        leaderboardsByTextHologramId.remove(textHologram.getId(), this);
+    }
+
     /**
      * Kills the leaderboard and all its entities.
      *
@@ -545,7 +638,7 @@ public class LeaderboardHologram {
      */
     @Deprecated
     public void kill() {
-        hologramIdToLeaderboard.remove(textHologram.getId());
+        unregister();
 
         if (firstPlaceHead != null && !firstPlaceHead.isDead()) {
             firstPlaceHead.getInternalAccess().kill();
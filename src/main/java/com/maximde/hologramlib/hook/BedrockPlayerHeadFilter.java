@@ -8,19 +8,15 @@ import com.github.retrooper.packetevents.protocol.entity.data.EntityData;
 import com.github.retrooper.packetevents.protocol.entity.data.EntityDataTypes;
 import com.github.retrooper.packetevents.protocol.packettype.PacketType;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityMetadata;
-import com.maximde.hologramlib.HologramLib;
-import com.maximde.hologramlib.hologram.Hologram;
+import com.maximde.hologramlib.hologram.HologramEntityIds;
 import com.maximde.hologramlib.hologram.TextHologram;
 import com.maximde.hologramlib.hologram.custom.LeaderboardHologram;
-import com.maximde.hologramlib.utils.MiniMessage;
 import net.kyori.adventure.text.Component;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.regex.Pattern;
 
 /**
  * Packet listener that filters out player head components from text displays
@@ -28,10 +24,6 @@ import java.util.regex.Pattern;
  */
 public class BedrockPlayerHeadFilter implements PacketListener {
 
-    private static final int TEXT_DISPLAY_TEXT_INDEX = 23;
-
-    private static final Pattern HEAD_TAG_PATTERN = Pattern.compile("<head:[^>]+>");
-
     public BedrockPlayerHeadFilter(PacketEventsAPI<?> packetEventsAPI) {
         packetEventsAPI.getEventManager().registerListener(this, PacketListenerPriority.LOW);
     }
@@ -39,6 +31,7 @@ public class BedrockPlayerHeadFilter implements PacketListener {
     @Override
     public void onPacketSend(@NotNull PacketSendEvent event) {
         if (event.getPacketType() != PacketType.Play.Server.ENTITY_METADATA) return;
+        if (!HologramEntityIds.isHologramPacket(event)) return;
 
         Player player = event.getPlayer();
 
@@ -47,18 +40,8 @@ public class BedrockPlayerHeadFilter implements PacketListener {
 
     private void handleMetadataPacket(PacketSendEvent event, Player player) {
         WrapperPlayServerEntityMetadata packet = new WrapperPlayServerEntityMetadata(event);
-        int entityId = packet.getEntityId();
-
-        Optional<com.maximde.hologramlib.hologram.HologramManager> managerOpt = HologramLib.getManager();
-        if (managerOpt.isEmpty()) return;
-
-        Optional<Hologram<?>> hologramOptional = managerOpt.get().getHologramByEntityId(entityId);
-        if (hologramOptional.isEmpty()) return;
 
-        Hologram<?> hologram = hologramOptional.get();
-        if (!(hologram instanceof TextHologram textHologram)) return;
-
-        LeaderboardHologram leaderboard = findAssociatedLeaderboard(textHologram);
+        LeaderboardHologram leaderboard = LeaderboardHologram.getLeaderboardByEntityId(packet.getEntityId());
         if (leaderboard == null) return;
 
         LeaderboardHologram.LeaderboardOptions options = leaderboard.getOptions();
@@ -72,18 +55,15 @@ public class BedrockPlayerHeadFilter implements PacketListener {
         boolean textModified = false;
 
         for (EntityData<?> data : packet.getEntityMetadata()) {
-            if (data.getIndex() == TEXT_DISPLAY_TEXT_INDEX &&
+            if (data.getIndex() == TextHologram.TEXT_INDEX &&
                     data.getType() == EntityDataTypes.ADV_COMPONENT) {
 
                 Component originalComponent = (Component) data.getValue();
-                String serialized = net.kyori.adventure.text.minimessage.MiniMessage.miniMessage().serialize(originalComponent);
-
-                String filteredText = HEAD_TAG_PATTERN.matcher(serialized).replaceAll("");
+                Component filteredComponent = leaderboard.getBedrockText(originalComponent);
 
-                if (!serialized.equals(filteredText)) {
-                    Component filteredComponent = MiniMessage.get(filteredText);
+                if (!filteredComponent.equals(originalComponent)) {
                     newMetadata.add(new EntityData<>(
-                            TEXT_DISPLAY_TEXT_INDEX,
+                            TextHologram.TEXT_INDEX,
                             EntityDataTypes.ADV_COMPONENT,
                             filteredComponent
                     ));
@@ -100,8 +80,4 @@ public class BedrockPlayerHeadFilter implements PacketListener {
             packet.setEntityMetadata(newMetadata);
         }
     }
-
-    private LeaderboardHologram findAssociatedLeaderboard(TextHologram textHologram) {
-        return LeaderboardHologram.getLeaderboardByTextHologramId(textHologram.getId());
-    }
-}
\ No newline at end of file
+}
@@ -10,9 +10,9 @@ import com.github.retrooper.packetevents.protocol.packettype.PacketType;
 import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityMetadata;
 import com.maximde.hologramlib.HologramLib;
 import com.maximde.hologramlib.hologram.Hologram;
+import com.maximde.hologramlib.hologram.HologramEntityIds;
 import com.maximde.hologramlib.hologram.TextHologram;
 import com.maximde.hologramlib.utils.MiniMessage;
-import me.clip.placeholderapi.PlaceholderAPI;
 import net.kyori.adventure.text.Component;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
@@ -23,8 +23,6 @@ import java.util.Optional;
 
 public class PlaceholderAPIHook implements PacketListener {
 
-    private static final int TEXT_DISPLAY_TEXT_INDEX = 23; // The index for the message in the Entity Metadata packet (It worked on my side, tbh i dont feel like this is safe, but it works for now)
-
     public PlaceholderAPIHook(PacketEventsAPI<?> packetEventsAPI) {
         packetEventsAPI.getEventManager().registerListener(this, PacketListenerPriority.NORMAL);
     }
@@ -32,6 +30,7 @@ public class PlaceholderAPIHook implements PacketListener {
     @Override
     public void onPacketSend(@NotNull PacketSendEvent event) {
         if (event.getPacketType() != PacketType.Play.Server.ENTITY_METADATA) return;
+        if (!HologramEntityIds.isHologramPacket(event)) return;
 
         WrapperPlayServerEntityMetadata packet = new WrapperPlayServerEntityMetadata(event);
         int entityId = packet.getEntityId();
@@ -51,7 +50,7 @@ public class PlaceholderAPIHook implements PacketListener {
             return;
         }
 
-        if (!textHologram.isPlaceholderApiEnabled()) {
+        if (!textHologram.isPlaceholderApiEnabled() || textHologram.getTemplate() != null) {
             return;
         }
 
@@ -65,18 +64,20 @@ public class PlaceholderAPIHook implements PacketListener {
             return;
         }
 
-        String parsedText = PlaceholderAPI.setPlaceholders(player, rawText);
-        Component finalComponent = MiniMessage.get(textHologram.replaceFontImages(parsedText));
+        // Placeholders are resolved off the netty thread, until the first result is there the unresolved text is shown.
+        // Viewers added on their own thread already got their text resolved while being added.
+        Component finalComponent = textHologram.getCachedTextForPlayer(player);
+        if (finalComponent == null) finalComponent = MiniMessage.get(textHologram.replaceFontImages(rawText));
 
         List<EntityData<?>> newMetadata = new ArrayList<>();
         boolean textMetaFound = false;
 
         for (EntityData<?> data : packet.getEntityMetadata()) {
-            if (data.getIndex() == TEXT_DISPLAY_TEXT_INDEX &&
+            if (data.getIndex() == TextHologram.TEXT_INDEX &&
                 data.getType() == EntityDataTypes.ADV_COMPONENT) {
 
                 newMetadata.add(new EntityData<>(
-                    TEXT_DISPLAY_TEXT_INDEX,
+                    TextHologram.TEXT_INDEX,
                     EntityDataTypes.ADV_COMPONENT,
                     finalComponent
                 ));
@@ -88,7 +89,7 @@ public class PlaceholderAPIHook implements PacketListener {
 
         if (!textMetaFound) {
             newMetadata.add(new EntityData<>(
-                TEXT_DISPLAY_TEXT_INDEX,
+                TextHologram.TEXT_INDEX,
                 EntityDataTypes.ADV_COMPONENT,
                 finalComponent
             ));
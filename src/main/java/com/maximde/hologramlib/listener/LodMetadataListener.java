@@ -0,0 +1,78 @@
+package com.maximde.hologramlib.listener;
+
+import com.github.retrooper.packetevents.event.PacketListener;
+import com.github.retrooper.packetevents.event.PacketSendEvent;
+import com.github.retrooper.packetevents.protocol.entity.data.EntityData;
+import com.github.retrooper.packetevents.protocol.entity.data.EntityDataTypes;
+import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityMetadata;
+import com.maximde.hologramlib.hologram.Hologram;
+import com.maximde.hologramlib.hologram.HologramEntityIds;
+import com.maximde.hologramlib.hologram.HologramManager;
+import com.maximde.hologramlib.hologram.LodVariant;
+import com.maximde.hologramlib.hologram.TextHologram;
+import lombok.RequiredArgsConstructor;
+import net.kyori.adventure.text.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Replaces the metadata of text holograms with the LOD variant the receiving player currently gets.
+ * Runs after the PlaceholderAPI hook, so the text of a variant wins over the parsed placeholders.
+ */
+@RequiredArgsConstructor
+public class LodMetadataListener implements PacketListener {
+
+    /**
+     * Indices of the text display fields, taken from EntityLib which shifts them for the server version
+     * the metadata is written in (displays before 1.20.2 have one field less)
+     */
+    private static final int LINE_WIDTH_INDEX = TextHologram.TEXT_INDEX + 1;
+    private static final int BACKGROUND_COLOR_INDEX = TextHologram.TEXT_INDEX + 2;
+    private static final int STYLE_FLAGS_INDEX = TextHologram.TEXT_INDEX + 4;
+    private static final byte SHADOW_FLAG = 0x01;
+
+    private final HologramManager hologramManager;
+
+    @Override
+    public void onPacketSend(PacketSendEvent event) {
+        if (event.getPacketType() != PacketType.Play.Server.ENTITY_METADATA) return;
+        if (!HologramEntityIds.isHologramPacket(event)) return;
+
+        UUID uuid = event.getUser().getUUID();
+        if (uuid == null) return;
+
+        WrapperPlayServerEntityMetadata packet = new WrapperPlayServerEntityMetadata(event);
+        Optional<Hologram<?>> hologram = hologramManager.getHologramByEntityId(packet.getEntityId());
+        if (hologram.isEmpty() || !(hologram.get() instanceof TextHologram textHologram)) return;
+
+        LodVariant variant = textHologram.getLodVariant(uuid);
+        if (variant == null) return;
+
+        List<EntityData<?>> metadata = new ArrayList<>(packet.getEntityMetadata().size());
+        for (EntityData<?> data : packet.getEntityMetadata()) {
+            metadata.add(apply(variant, data));
+        }
+        packet.setEntityMetadata(metadata);
+    }
+
+    private EntityData<?> apply(LodVariant variant, EntityData<?> data) {
+        Component text = variant.getText();
+        if (data.getIndex() == TextHologram.TEXT_INDEX && text != null && data.getType() == EntityDataTypes.ADV_COMPONENT) {
+            return new EntityData<>(TextHologram.TEXT_INDEX, EntityDataTypes.ADV_COMPONENT, text);
+        }
+        if (data.getIndex() == LINE_WIDTH_INDEX && variant.getMaxLineWidth() != null && data.getType() == EntityDataTypes.INT) {
+            return new EntityData<>(LINE_WIDTH_INDEX, EntityDataTypes.INT, variant.getMaxLineWidth());
+        }
+        if (data.getIndex() == BACKGROUND_COLOR_INDEX && variant.isHideBackground() && data.getType() == EntityDataTypes.INT) {
+            return new EntityData<>(BACKGROUND_COLOR_INDEX, EntityDataTypes.INT, 0);
+        }
+        if (data.getIndex() == STYLE_FLAGS_INDEX && variant.isHideShadow() && data.getValue() instanceof Byte flags) {
+            return new EntityData<>(STYLE_FLAGS_INDEX, EntityDataTypes.BYTE, (byte) (flags & ~SHADOW_FLAG));
+        }
+        return data;
+    }
+}
@@ -1,8 +1,10 @@
 package com.maximde.hologramlib.listener;
 
 import com.maximde.hologramlib.hologram.HologramManager;
+import com.maximde.hologramlib.hologram.PlayerIndex;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 
@@ -11,10 +13,19 @@ public class PlayerJoinListener implements Listener {
 
     private final HologramManager hologramManager;
 
+    /**
+     * Indexes the player before any other plugin handles the join, so holograms created there already find it
+     */
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void indexPlayer(PlayerJoinEvent event) {
+        PlayerIndex.add(event.getPlayer());
+    }
+
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
         hologramManager.getEventHandlers().forEach(handler ->
                 handler.onJoin(event.getPlayer()));
+        hologramManager.getVisibilityEngine().refreshPlayerLater(event.getPlayer());
     }
 
 }
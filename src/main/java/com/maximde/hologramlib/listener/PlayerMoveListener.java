@@ -0,0 +1,52 @@
+package com.maximde.hologramlib.listener;
+
+import com.maximde.hologramlib.hologram.HologramManager;
+import com.maximde.hologramlib.hologram.VisibilityEngine;
+import lombok.RequiredArgsConstructor;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+/**
+ * Feeds player movement into the visibility engine.
+ * The location is always recorded for the region aware mode, cell changes are only
+ * processed when the engine runs in movement driven mode.
+ */
+@RequiredArgsConstructor
+public class PlayerMoveListener implements Listener {
+
+    private final HologramManager hologramManager;
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        VisibilityEngine engine = hologramManager.getVisibilityEngine();
+        Location to = event.getTo();
+        if (to == null) return;
+        engine.recordLocation(event.getPlayer(), to);
+
+        if (!engine.isMovementDriven() || engine.getIndex().isSameCell(event.getFrom(), to)) return;
+
+        engine.refreshPlayer(event.getPlayer(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(PlayerTeleportEvent event) {
+        VisibilityEngine engine = hologramManager.getVisibilityEngine();
+        if (!engine.isMovementDriven() && !engine.isRegionAware()) return;
+        engine.refreshPlayerLater(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        VisibilityEngine engine = hologramManager.getVisibilityEngine();
+        Location location = event.getPlayer().getLocation();
+        engine.recordLocation(event.getPlayer(), location);
+        if (!engine.isMovementDriven()) return;
+        engine.refreshPlayer(event.getPlayer(), location);
+    }
+
+}
@@ -1,8 +1,11 @@
 package com.maximde.hologramlib.listener;
 
 import com.maximde.hologramlib.hologram.HologramManager;
+import com.maximde.hologramlib.hologram.PlayerIndex;
+import com.maximde.hologramlib.utils.PacketQueue;
 import lombok.RequiredArgsConstructor;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerQuitEvent;
 
@@ -15,6 +18,17 @@ public class PlayerQuitListener implements Listener {
     public void onQuit(PlayerQuitEvent event) {
         hologramManager.getEventHandlers().forEach(handler ->
                 handler.onJoin(event.getPlayer()));
+        hologramManager.getVisibilityEngine().forgetPlayer(event.getPlayer());
+        hologramManager.forgetViewer(event.getPlayer());
+        PacketQueue.forget(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Removes the player from the index after every other plugin handled the quit, so they still find it
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void unindexPlayer(PlayerQuitEvent event) {
+        PlayerIndex.remove(event.getPlayer());
     }
 
 }
@@ -3,7 +3,9 @@ package com.maximde.hologramlib.utils;
 import com.tcoded.folialib.FoliaLib;
 import com.tcoded.folialib.wrapper.task.WrappedTask;
 import lombok.Setter;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
+import org.bukkit.entity.Entity;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.scheduler.BukkitRunnable;
 
@@ -19,6 +21,18 @@ public final class BukkitTasks {
 
     }
 
+    public static boolean isFolia() {
+        return foliaLib != null && foliaLib.isFolia();
+    }
+
+    /**
+     * @return Whether the current thread owns the entity, on Folia the thread of its region, otherwise the main thread
+     */
+    public static boolean isOwnedByCurrentThread(Entity entity) {
+        if (foliaLib.isFolia()) return foliaLib.getScheduler().isOwnedByCurrentRegion(entity);
+        return Bukkit.isPrimaryThread();
+    }
+
     public static void runTask(Runnable runnable) {
         if (foliaLib.isFolia()) {
             foliaLib.getScheduler().runNextTick(task -> runnable.run());
@@ -45,6 +59,23 @@ public final class BukkitTasks {
         }
     }
 
+    /**
+     * Runs the task on the thread owning the entity.
+     * On Folia this uses the entity scheduler, otherwise the main thread.
+     */
+    public static void runTaskLater(Runnable runnable, Entity entity, long delay) {
+        if (foliaLib.isFolia()) {
+            foliaLib.getScheduler().runAtEntityLater(entity, runnable, delay);
+        } else {
+            new BukkitRunnable() {
+                @Override
+                public void run() {
+                    runnable.run();
+                }
+            }.runTaskLater(plugin, delay);
+        }
+    }
+
     public static void runTaskAsync(Runnable runnable) {
         if (foliaLib.isFolia()) {
             foliaLib.getScheduler().runAsync(task -> runnable.run());
@@ -84,6 +115,25 @@ public final class BukkitTasks {
         }
     }
 
+    /**
+     * Runs the task repeatedly on the main thread, on Folia on the global region
+     */
+    public static TaskHandle runTaskTimer(Runnable runnable, long delay, long period) {
+        if (foliaLib.isFolia()) {
+            WrappedTask wrappedTask = foliaLib.getScheduler().runTimer(runnable, delay, period);
+            return createTaskHandle(wrappedTask);
+        } else {
+            BukkitRunnable bukkitRunnable = new BukkitRunnable() {
+                @Override
+                public void run() {
+                    runnable.run();
+                }
+            };
+            bukkitRunnable.runTaskTimer(plugin, delay, period);
+            return createTaskHandle(bukkitRunnable);
+        }
+    }
+
     public static TaskHandle runTaskTimerAsync(Runnable runnable, long delay, long period) {
         if (foliaLib.isFolia()) {
             WrappedTask wrappedTask = foliaLib.getScheduler().runTimerAsync(runnable, delay, period);
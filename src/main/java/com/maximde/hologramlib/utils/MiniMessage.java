@@ -1,14 +1,117 @@
 package com.maximde.hologramlib.utils;
 
 import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.minimessage.tag.resolver.TagResolver;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 public class MiniMessage {
     private static final net.kyori.adventure.text.minimessage.MiniMessage minimessage = net.kyori.adventure.text.minimessage.MiniMessage.miniMessage();
+
+    /**
+     * Parsed components by input, components are immutable so they can be shared.
+     * The cache is bounded by the summed length of the cached inputs, the oldest entries are evicted first.
+     * Lookups never lock, inserting, evicting and clearing are done under one lock so the length stays exact.
+     */
+    private static final Map<String, Component> cache = new ConcurrentHashMap<>();
+    private static final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private static final Object lock = new Object();
+    private static long cachedChars = 0;
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder misses = new LongAdder();
+
+    /**
+     * Maximum summed length of all cached inputs
+     */
+    private static volatile long cacheCapacity = 1 << 20;
+
+    /**
+     * Inputs longer than this are never cached
+     */
+    private static volatile int maxCachedLength = 4096;
+
     public static Component get(String message) {
+        if (message.length() > maxCachedLength) return getUncached(message);
+
+        Component cached = cache.get(message);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        misses.increment();
+        Component component = minimessage.deserialize(message);
+        synchronized (lock) {
+            if (cache.putIfAbsent(message, component) == null) {
+                insertionOrder.add(message);
+                cachedChars += message.length();
+                if (cachedChars > cacheCapacity) evict();
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Parses the message without the cache, for one-off strings which would only push out useful entries
+     */
+    public static Component getUncached(String message) {
         return minimessage.deserialize(message);
     }
 
+    /**
+     * Parses the message with additional tags, never cached because the result depends on the resolver
+     */
+    public static Component get(String message, TagResolver resolver) {
+        return minimessage.deserialize(message, resolver);
+    }
+
     public static String stripTags(String message) {
         return minimessage.stripTags(message);
     }
+
+    private static void evict() {
+        synchronized (lock) {
+            while (cachedChars > cacheCapacity) {
+                String oldest = insertionOrder.poll();
+                if (oldest == null) return;
+                if (cache.remove(oldest) != null) cachedChars -= oldest.length();
+            }
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (lock) {
+            cache.clear();
+            insertionOrder.clear();
+            cachedChars = 0;
+        }
+    }
+
+    /**
+     * @param capacity Maximum summed length of all cached inputs, 0 disables the cache
+     */
+    public static void setCacheCapacity(long capacity) {
+        cacheCapacity = capacity;
+        evict();
+    }
+
+    public static void setMaxCachedLength(int length) {
+        maxCachedLength = length;
+    }
+
+    public static long getCacheHits() {
+        return hits.sum();
+    }
+
+    public static long getCacheMisses() {
+        return misses.sum();
+    }
+
+    public static int getCacheSize() {
+        return cache.size();
+    }
 }
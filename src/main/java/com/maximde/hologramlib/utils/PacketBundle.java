@@ -0,0 +1,72 @@
+package com.maximde.hologramlib.utils;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.manager.server.ServerVersion;
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
+import com.github.retrooper.packetevents.protocol.player.User;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerBundle;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wraps all packets which are sent to the players while an action runs into one bundle per player.
+ * The client applies a bundle in a single frame, so entities which belong together appear at the same time.
+ * Clients and servers older than 1.19.4 do not support bundles, the action just runs normally for them.
+ * Nested calls on the same thread are sent within the outer bundle.
+ * Packets of the action bypass the {@link PacketQueue}, anything queued before is written ahead of the bundle.
+ * The write locks of the players are held until the bundle is closed, so flushes and direct writes
+ * of other threads wait instead of ending up inside the bundle.
+ */
+public final class PacketBundle {
+
+    private static final ThreadLocal<Boolean> BUNDLING = ThreadLocal.withInitial(() -> false);
+
+    private PacketBundle() {
+
+    }
+
+    public static void run(Collection<? extends Player> players, Runnable action) {
+        if (BUNDLING.get()) {
+            action.run();
+            return;
+        }
+
+        BUNDLING.set(true);
+        List<User> users = new ArrayList<>(players.size());
+        List<ReentrantLock> locks = new ArrayList<>(players.size());
+        try {
+            if (PacketEvents.getAPI().getServerManager().getVersion().isNewerThanOrEquals(ServerVersion.V_1_19_4)) {
+                // Always locked in the same order, so two bundles for overlapping players cannot deadlock
+                List<Player> sorted = new ArrayList<>(players);
+                sorted.sort(Comparator.comparing(Player::getUniqueId));
+                for (Player player : sorted) {
+                    User user = PacketEvents.getAPI().getPlayerManager().getUser(player);
+                    if (user == null || user.getClientVersion().isOlderThan(ClientVersion.V_1_19_4)) continue;
+                    ReentrantLock lock = PacketQueue.getWriteLock(player.getUniqueId());
+                    lock.lock();
+                    locks.add(lock);
+                    PacketQueue.flush(player.getUniqueId());
+                    user.writePacket(new WrapperPlayServerBundle());
+                    users.add(user);
+                }
+            }
+
+            PacketQueue.runDirect(action);
+        } finally {
+            BUNDLING.set(false);
+            try {
+                for (User user : users) {
+                    user.writePacket(new WrapperPlayServerBundle());
+                    user.flushPackets();
+                }
+            } finally {
+                locks.forEach(ReentrantLock::unlock);
+            }
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package com.maximde.hologramlib.utils;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.netty.buffer.ByteBufHelper;
+import com.github.retrooper.packetevents.protocol.entity.data.EntityData;
+import com.github.retrooper.packetevents.protocol.player.ClientVersion;
+import com.github.retrooper.packetevents.protocol.player.User;
+import com.github.retrooper.packetevents.wrapper.PacketWrapper;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerDestroyEntities;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityMetadata;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityRelativeMove;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityRelativeMoveAndRotation;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityRotation;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityTeleport;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Collects the hologram packets of every player and writes them once per tick with a single flush.
+ * Redundant packets are merged while they wait: metadata of the same entity is combined into one packet,
+ * only the latest teleport of an entity is kept and both are dropped when the entity gets destroyed in the same tick.
+ * When the queue is not running, packets are sent right away.
+ * <p>
+ * With a bandwidth budget, metadata which does not fit into the budget of a player is kept
+ * for the next tick (and merged with newer updates), lowest ranked first. Everything else is always sent,
+ * since relative moves depend on the position the client got before.
+ * <p>
+ * Everything written to a player happens under the write lock of that player, so the packets of an open
+ * {@link PacketBundle} cannot be mixed with a flush or a direct write of another thread.
+ */
+public final class PacketQueue {
+
+    private static final Map<UUID, Map<Object, Entry>> QUEUES = new ConcurrentHashMap<>();
+    private static final Map<UUID, Usage> USAGE = new ConcurrentHashMap<>();
+    private static final Map<UUID, ReentrantLock> WRITE_LOCKS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Boolean> DIRECT = ThreadLocal.withInitial(() -> false);
+    private static final LongAdder ENCODES = new LongAdder();
+    private static final LongAdder WRITES = new LongAdder();
+    private static final LongAdder DEFERRED = new LongAdder();
+
+    private static volatile TaskHandle task;
+
+    /**
+     * Bytes per second every player may receive from holograms before updates get deferred, 0 means unlimited
+     */
+    private static volatile int bandwidthBudget = 0;
+
+    private PacketQueue() {
+
+    }
+
+    private record MetadataKey(int entityId) {}
+
+    private record TeleportKey(int entityId) {}
+
+    /**
+     * Identifies a merge by the two packets it was made from, compared by identity
+     */
+    private record MergeKey(PacketWrapper<?> previous, PacketWrapper<?> next) {
+
+        @Override
+        public boolean equals(Object object) {
+            return object instanceof MergeKey other && other.previous == this.previous && other.next == this.next;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(this.previous) + System.identityHashCode(this.next);
+        }
+    }
+
+    /**
+     * Merged metadata by the packets it was merged from. Every player which got the same two updates shares one
+     * merged packet, so it is still encoded once per client version. Cleared on every flush.
+     */
+    private static final Map<MergeKey, WrapperPlayServerEntityMetadata> MERGED = new ConcurrentHashMap<>();
+
+    /**
+     * @param rank Importance of the packet for the receiving player, higher ranked updates are sent first when the budget is exceeded
+     */
+    private record Entry(PacketWrapper<?> packet, double rank) {}
+
+    /**
+     * Token bucket and statistics of the traffic a single player receives
+     */
+    private static final class Usage {
+        private final LongAdder totalBytes = new LongAdder();
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+        private long windowStart = System.nanoTime();
+        private long windowBytes;
+        private volatile long bytesPerSecond;
+
+        private synchronized void refill(int budget) {
+            long now = System.nanoTime();
+            this.tokens = Math.min(budget, this.tokens + budget * ((now - this.lastRefill) / (double) TimeUnit.SECONDS.toNanos(1)));
+            this.lastRefill = now;
+        }
+
+        private synchronized boolean hasTokens() {
+            return this.tokens > 0;
+        }
+
+        private synchronized void record(int bytes) {
+            this.tokens -= bytes;
+            this.totalBytes.add(bytes);
+            long now = System.nanoTime();
+            if (now - this.windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+                this.bytesPerSecond = this.windowBytes;
+                this.windowBytes = 0;
+                this.windowStart = now;
+            }
+            this.windowBytes += bytes;
+        }
+    }
+
+    public static void start() {
+        if (task != null) return;
+        task = BukkitTasks.runTaskTimerAsync(PacketQueue::flush, 1, 1);
+    }
+
+    /**
+     * Stops the flush task and sends everything that is still queued
+     */
+    public static void shutdown() {
+        if (task != null) task.cancel();
+        task = null;
+        int budget = bandwidthBudget;
+        bandwidthBudget = 0;
+        flush();
+        bandwidthBudget = budget;
+        QUEUES.clear();
+        USAGE.clear();
+    }
+
+    public static boolean isRunning() {
+        return task != null;
+    }
+
+    /**
+     * Limits the amount of hologram traffic every player receives.
+     * Spawns, destroys, movement and passenger changes always go through, metadata gets deferred.
+     * @param bytesPerSecond Budget per player, 0 disables the limit
+     */
+    public static void setBandwidthBudget(int bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("The bandwidth budget cannot be negative");
+        }
+        bandwidthBudget = bytesPerSecond;
+    }
+
+    public static int getBandwidthBudget() {
+        return bandwidthBudget;
+    }
+
+    /**
+     * Whether packets are ranked, only needed while a bandwidth budget is set
+     */
+    public static boolean isBudgeted() {
+        return bandwidthBudget > 0;
+    }
+
+    /**
+     * Runs the action with the queue bypassed on the current thread, packets sent by it are written immediately
+     */
+    public static void runDirect(Runnable action) {
+        if (DIRECT.get()) {
+            action.run();
+            return;
+        }
+        DIRECT.set(true);
+        try {
+            action.run();
+        } finally {
+            DIRECT.set(false);
+        }
+    }
+
+    /**
+     * @return The lock which is held while packets are written to the player
+     */
+    public static ReentrantLock getWriteLock(UUID player) {
+        return WRITE_LOCKS.computeIfAbsent(player, uuid -> new ReentrantLock());
+    }
+
+    /**
+     * Runs the writer with the write lock of the player held, for packets which are written without the queue
+     */
+    public static void runLocked(UUID player, Runnable writer) {
+        ReentrantLock lock = getWriteLock(player);
+        lock.lock();
+        try {
+            writer.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static void enqueue(Player player, PacketWrapper<?> packet) {
+        enqueue(player.getUniqueId(), packet, 0);
+    }
+
+    public static void enqueue(UUID player, PacketWrapper<?> packet) {
+        enqueue(player, packet, 0);
+    }
+
+    /**
+     * @param rank Importance of the packet for the player, see {@link #setBandwidthBudget(int)}
+     */
+    public static void enqueue(UUID player, PacketWrapper<?> packet, double rank) {
+        if (!isRunning() || DIRECT.get()) {
+            send(player, packet);
+            return;
+        }
+
+        Map<Object, Entry> queue = QUEUES.computeIfAbsent(player, uuid -> new LinkedHashMap<>());
+        synchronized (queue) {
+            offer(queue, new Entry(packet, rank));
+        }
+    }
+
+    private static void offer(Map<Object, Entry> queue, Entry entry) {
+        PacketWrapper<?> packet = entry.packet();
+        if (packet instanceof WrapperPlayServerEntityMetadata metadata) {
+            MetadataKey key = new MetadataKey(metadata.getEntityId());
+            Entry queued = queue.remove(key);
+            if (queued != null && queued.packet() instanceof WrapperPlayServerEntityMetadata previous) {
+                WrapperPlayServerEntityMetadata merged = MERGED.computeIfAbsent(new MergeKey(previous, metadata),
+                        mergeKey -> merge(previous, metadata));
+                entry = new Entry(merged, Math.max(queued.rank(), entry.rank()));
+            }
+            queue.put(key, entry);
+        } else if (packet instanceof WrapperPlayServerEntityTeleport teleport) {
+            TeleportKey key = new TeleportKey(teleport.getEntityId());
+            queue.remove(key);
+            queue.put(key, entry);
+        } else {
+            if (packet instanceof WrapperPlayServerDestroyEntities destroy) {
+                for (int entityId : destroy.getEntityIds()) {
+                    queue.remove(new MetadataKey(entityId));
+                    queue.remove(new TeleportKey(entityId));
+                }
+            }
+            queue.put(new Object(), entry);
+        }
+    }
+
+    /**
+     * Writes the queued packets of all players, with one flush per player.
+     * A packet which is queued for several players gets encoded only once per client version.
+     */
+    public static void flush() {
+        MERGED.clear();
+        Map<PacketWrapper<?>, Map<ClientVersion, Object>> encoded = new IdentityHashMap<>();
+        try {
+            for (UUID player : QUEUES.keySet()) {
+                flush(player, encoded);
+            }
+        } finally {
+            release(encoded);
+        }
+    }
+
+    /**
+     * Writes the queued packets of a single player, with one flush
+     */
+    public static void flush(UUID player) {
+        Map<PacketWrapper<?>, Map<ClientVersion, Object>> encoded = new IdentityHashMap<>();
+        try {
+            flush(player, encoded);
+        } finally {
+            release(encoded);
+        }
+    }
+
+    private static void flush(UUID player, Map<PacketWrapper<?>, Map<ClientVersion, Object>> encoded) {
+        Map<Object, Entry> queue = QUEUES.get(player);
+        if (queue == null) return;
+
+        List<Entry> entries;
+        synchronized (queue) {
+            if (queue.isEmpty()) return;
+            entries = new ArrayList<>(queue.values());
+            queue.clear();
+        }
+
+        User user = getUser(player);
+        if (user == null) {
+            forget(player);
+            return;
+        }
+
+        int budget = bandwidthBudget;
+        Usage usage = USAGE.computeIfAbsent(player, uuid -> new Usage());
+        if (budget > 0) usage.refill(budget);
+
+        ReentrantLock lock = getWriteLock(player);
+        lock.lock();
+        try {
+            List<Entry> deferrable = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (budget > 0 && isDeferrable(entry.packet())) {
+                    deferrable.add(entry);
+                } else {
+                    usage.record(write(user, entry.packet(), encoded));
+                }
+            }
+
+            if (!deferrable.isEmpty()) {
+                deferrable.sort(Comparator.comparingDouble(Entry::rank).reversed());
+                List<Entry> deferred = new ArrayList<>();
+                for (Entry entry : deferrable) {
+                    if (usage.hasTokens()) {
+                        usage.record(write(user, entry.packet(), encoded));
+                    } else {
+                        deferred.add(entry);
+                    }
+                }
+                if (!deferred.isEmpty()) requeue(queue, deferred);
+            }
+
+            user.flushPackets();
+        } catch (Exception e) {
+            Bukkit.getLogger().log(Level.WARNING, "Failed to flush hologram packets of " + player, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts the deferred updates back in front of the packets queued in the meantime,
+     * so newer updates of the same entity are merged into them
+     */
+    private static void requeue(Map<Object, Entry> queue, List<Entry> deferred) {
+        DEFERRED.add(deferred.size());
+        synchronized (queue) {
+            List<Entry> queued = new ArrayList<>(queue.values());
+            queue.clear();
+            deferred.forEach(entry -> offer(queue, entry));
+            queued.forEach(entry -> offer(queue, entry));
+        }
+    }
+
+    private static boolean isDeferrable(PacketWrapper<?> packet) {
+        return packet instanceof WrapperPlayServerEntityMetadata;
+    }
+
+    /**
+     * Writes the encoded packet, the packet is only encoded for the first player of every client version.
+     * The raw buffer still passes the packet listeners, so per player rewrites like placeholders keep working.
+     * Metadata gets rewritten per player (placeholders, LOD variants, Bedrock leaderboards) and a rewrite is
+     * encoded back into the buffer, so every player gets its own copy of it. Other packets share the memory.
+     * @return Size of the packet in bytes
+     */
+    private static int write(User user, PacketWrapper<?> packet, Map<PacketWrapper<?>, Map<ClientVersion, Object>> encoded) {
+        Object buffer = encoded.computeIfAbsent(packet, key -> new EnumMap<>(ClientVersion.class))
+                .computeIfAbsent(user.getClientVersion(), version -> encode(packet, user));
+        int size = ByteBufHelper.readableBytes(buffer);
+        Object outgoing = packet instanceof WrapperPlayServerEntityMetadata
+                ? ByteBufHelper.copy(buffer)
+                : ByteBufHelper.retainedDuplicate(buffer);
+        PacketEvents.getAPI().getProtocolManager().writePacket(user.getChannel(), outgoing);
+        WRITES.increment();
+        return size;
+    }
+
+    private static Object encode(PacketWrapper<?> packet, User user) {
+        synchronized (packet) {
+            packet.buffer = null;
+            packet.prepareForSend(user.getChannel(), true);
+            Object buffer = packet.buffer;
+            packet.buffer = null;
+            ENCODES.increment();
+            return buffer;
+        }
+    }
+
+    private static void release(Map<PacketWrapper<?>, Map<ClientVersion, Object>> encoded) {
+        for (Map<ClientVersion, Object> buffers : encoded.values()) {
+            buffers.values().forEach(ByteBufHelper::release);
+        }
+    }
+
+    /**
+     * @return How many packets were serialized by the queue since startup
+     */
+    public static long getEncodedPackets() {
+        return ENCODES.sum();
+    }
+
+    /**
+     * @return How many packets were written to players by the queue since startup,
+     * the difference to {@link #getEncodedPackets()} is the amount of saved encodings
+     */
+    public static long getWrittenPackets() {
+        return WRITES.sum();
+    }
+
+    /**
+     * @return How often an update was pushed to the next tick because of the bandwidth budget
+     */
+    public static long getDeferredPackets() {
+        return DEFERRED.sum();
+    }
+
+    /**
+     * @return Hologram bytes the player received during the last full second
+     */
+    public static long getBytesPerSecond(UUID player) {
+        Usage usage = USAGE.get(player);
+        return usage == null ? 0 : usage.bytesPerSecond;
+    }
+
+    /**
+     * @return Hologram bytes the player received through the queue since joining, including packets written directly
+     */
+    public static long getBytesSent(UUID player) {
+        Usage usage = USAGE.get(player);
+        return usage == null ? 0 : usage.totalBytes.sum();
+    }
+
+    /**
+     * Drops the metadata and movement of the entity queued for the player, including deferred metadata.
+     * Used when the player stops viewing the entity, so nothing stale arrives after it gets spawned again.
+     */
+    public static void drop(UUID player, int entityId) {
+        Map<Object, Entry> queue = QUEUES.get(player);
+        if (queue == null) return;
+        synchronized (queue) {
+            queue.remove(new MetadataKey(entityId));
+            queue.remove(new TeleportKey(entityId));
+            queue.values().removeIf(entry -> movedEntityOf(entry.packet()) == entityId);
+        }
+    }
+
+    /**
+     * @return The entity a relative move or rotation packet belongs to, -1 for other packets
+     */
+    private static int movedEntityOf(PacketWrapper<?> packet) {
+        if (packet instanceof WrapperPlayServerEntityRelativeMove move) return move.getEntityId();
+        if (packet instanceof WrapperPlayServerEntityRelativeMoveAndRotation move) return move.getEntityId();
+        if (packet instanceof WrapperPlayServerEntityRotation rotation) return rotation.getEntityId();
+        return -1;
+    }
+
+    /**
+     * Drops everything queued for the player, used when the player leaves
+     */
+    public static void forget(UUID player) {
+        QUEUES.remove(player);
+        USAGE.remove(player);
+        WRITE_LOCKS.remove(player);
+    }
+
+    /**
+     * Writes the packet right away, it still counts towards the bandwidth of the player
+     */
+    private static void send(UUID player, PacketWrapper<?> packet) {
+        User user = getUser(player);
+        if (user == null) return;
+
+        ReentrantLock lock = getWriteLock(player);
+        lock.lock();
+        try {
+            Object buffer = encode(packet, user);
+            int size = ByteBufHelper.readableBytes(buffer);
+            PacketEvents.getAPI().getProtocolManager().sendPacket(user.getChannel(), buffer);
+            WRITES.increment();
+            USAGE.computeIfAbsent(player, uuid -> new Usage()).record(size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static User getUser(UUID uuid) {
+        Player player = Bukkit.getPlayer(uuid);
+        return player == null ? null : PacketEvents.getAPI().getPlayerManager().getUser(player);
+    }
+
+    /**
+     * Combines two metadata packets of the same entity, entries of the newer packet replace the older ones.
+     * Creates a new packet, since the queued wrappers are shared between all viewers.
+     * Only called once per pair of packets, see {@link #MERGED}.
+     */
+    private static WrapperPlayServerEntityMetadata merge(WrapperPlayServerEntityMetadata previous, WrapperPlayServerEntityMetadata next) {
+        Map<Integer, EntityData<?>> entries = new LinkedHashMap<>();
+        for (EntityData<?> data : previous.getEntityMetadata()) entries.put(data.getIndex(), data);
+        for (EntityData<?> data : next.getEntityMetadata()) entries.put(data.getIndex(), data);
+        return new WrapperPlayServerEntityMetadata(next.getEntityId(), new ArrayList<>(entries.values()));
+    }
+}
@@ -0,0 +1,126 @@
+package com.maximde.hologramlib.hologram;
+
+import com.github.retrooper.packetevents.PacketEvents;
+import com.github.retrooper.packetevents.PacketEventsAPI;
+import com.github.retrooper.packetevents.manager.server.ServerManager;
+import com.github.retrooper.packetevents.manager.server.ServerVersion;
+import com.github.retrooper.packetevents.netty.NettyManager;
+import com.github.retrooper.packetevents.protocol.entity.data.EntityData;
+import com.github.retrooper.packetevents.protocol.entity.data.EntityDataTypes;
+import com.github.retrooper.packetevents.wrapper.play.server.WrapperPlayServerEntityMetadata;
+import io.github.retrooper.packetevents.impl.netty.NettyManagerImpl;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.implementation.ExceptionMethod;
+import net.bytebuddy.implementation.FixedValue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per packet cost of the metadata listeners rejecting packets of other entities.
+ * Compares {@link HologramEntityIds#isHologramPacket} on the raw buffer against the path it replaced,
+ * which decoded the whole packet into a wrapper and looked the entity id up in the manager.
+ * Run with {@code ./gradlew benchmark}, the results are printed.
+ */
+@Tag("benchmark")
+class HologramEntityIdsBenchmark {
+
+    private static final int HOLOGRAMS = 2_000;
+    private static final int PACKETS = 1 << 14;
+    private static final int ROUNDS = 200;
+
+    private final Map<Integer, Object> hologramsByEntityId = new ConcurrentHashMap<>();
+    private ByteBuf[] packets;
+
+    @BeforeEach
+    void setUp() throws ReflectiveOperationException {
+        ServerManager serverManager = mock(ServerManager.class);
+        when(serverManager.getVersion()).thenReturn(ServerVersion.V_1_21_4);
+        // Generated instead of mocked, the buffer helpers resolve the netty manager on every call
+        PacketEventsAPI<?> api = new ByteBuddy()
+                .subclass(PacketEventsAPI.class)
+                .method(isAbstract()).intercept(ExceptionMethod.throwing(UnsupportedOperationException.class))
+                .method(named("getServerManager")).intercept(FixedValue.value(serverManager))
+                .method(named("getNettyManager")).intercept(FixedValue.value((NettyManager) new NettyManagerImpl()))
+                .make()
+                .load(PacketEventsAPI.class.getClassLoader())
+                .getLoaded()
+                .getDeclaredConstructor()
+                .newInstance();
+        PacketEvents.setAPI(api);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < HOLOGRAMS; i++) {
+            int entityId = random.nextInt(100_000);
+            HologramEntityIds.add(entityId);
+            this.hologramsByEntityId.put(entityId, new Object());
+        }
+
+        // Mostly mobs and players, like the metadata traffic of a real server
+        this.packets = new ByteBuf[PACKETS];
+        for (int i = 0; i < PACKETS; i++) {
+            WrapperPlayServerEntityMetadata wrapper = new WrapperPlayServerEntityMetadata(random.nextInt(100_000), List.of(
+                    new EntityData<>(0, EntityDataTypes.BYTE, (byte) random.nextInt(0x40)),
+                    new EntityData<>(1, EntityDataTypes.INT, random.nextInt(300)),
+                    new EntityData<>(4, EntityDataTypes.BOOLEAN, random.nextBoolean())
+            ));
+            ByteBuf buffer = Unpooled.buffer();
+            wrapper.buffer = buffer;
+            wrapper.write();
+            this.packets[i] = buffer;
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (ByteBuf packet : this.packets) packet.release();
+        HologramEntityIds.clear();
+        PacketEvents.setAPI(null);
+    }
+
+    @Test
+    void rejectPacketsOfOtherEntities() {
+        // The old listeners created a new wrapper from the event, reusing one only leaves out that allocation
+        WrapperPlayServerEntityMetadata wrapper = new WrapperPlayServerEntityMetadata(0, List.of());
+        Optional<Map<Integer, Object>> manager = Optional.of(this.hologramsByEntityId);
+        Predicate<ByteBuf> wrapperPath = buffer -> {
+            wrapper.buffer = buffer;
+            wrapper.read();
+            buffer.readerIndex(0);
+            return manager.get().get(wrapper.getEntityId()) != null;
+        };
+        Predicate<ByteBuf> bitsetPath = HologramEntityIds::isHologramPacket;
+
+        measure("warmup wrapper", wrapperPath);
+        measure("warmup bitset", bitsetPath);
+        measure("wrapper and lookup", wrapperPath);
+        measure("bitset", bitsetPath);
+    }
+
+    private void measure(String name, Predicate<ByteBuf> filter) {
+        int matches = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (ByteBuf packet : this.packets) {
+                if (filter.test(packet)) matches++;
+            }
+        }
+        double nanosPerPacket = (System.nanoTime() - start) / (double) (ROUNDS * (long) this.packets.length);
+        System.out.printf("%s: %.2f ns per packet (%d matches)%n", name, nanosPerPacket, matches);
+    }
+}
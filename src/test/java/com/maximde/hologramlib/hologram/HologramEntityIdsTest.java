@@ -0,0 +1,49 @@
+package com.maximde.hologramlib.hologram;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HologramEntityIdsTest {
+
+    @AfterEach
+    void tearDown() {
+        HologramEntityIds.clear();
+    }
+
+    @Test
+    void containsOnlyAddedIds() {
+        HologramEntityIds.add(5);
+        HologramEntityIds.add(64);
+
+        assertTrue(HologramEntityIds.contains(5));
+        assertTrue(HologramEntityIds.contains(64));
+        assertFalse(HologramEntityIds.contains(6));
+        assertFalse(HologramEntityIds.contains(63));
+        assertFalse(HologramEntityIds.contains(-1));
+    }
+
+    @Test
+    void growsForLargeIds() {
+        int large = 1_000_000;
+        HologramEntityIds.add(3);
+        HologramEntityIds.add(large);
+
+        assertTrue(HologramEntityIds.contains(3));
+        assertTrue(HologramEntityIds.contains(large));
+        assertFalse(HologramEntityIds.contains(large + 1));
+        assertFalse(HologramEntityIds.contains(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void removeClearsOnlyThatId() {
+        HologramEntityIds.add(10);
+        HologramEntityIds.add(11);
+        HologramEntityIds.remove(10);
+        HologramEntityIds.remove(50_000);
+
+        assertFalse(HologramEntityIds.contains(10));
+        assertTrue(HologramEntityIds.contains(11));
+    }
+}
@@ -0,0 +1,80 @@
+package com.maximde.hologramlib.hologram;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextColor;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextTemplateTest {
+
+    @Test
+    void replacesSlots() {
+        TextTemplate template = TextTemplate.compile("<gold>Online: <count>", "count");
+
+        Component result = template.apply(Map.of("count", Component.text("12")));
+
+        assertEquals("Online: 12", plainText(result));
+    }
+
+    @Test
+    void withSourceKeepsTheSlots() {
+        TextTemplate template = TextTemplate.compile("<gold>Online: <count>", "count").withSource("<gold>\uE000 <count>");
+
+        Component result = template.apply(Map.of("count", Component.text("12")));
+
+        assertEquals("\uE000 12", plainText(result));
+    }
+
+    @Test
+    void keepsTheStyleOfAStyledOnlySlot() {
+        TextTemplate template = TextTemplate.compile("<red><count>", "count");
+
+        Component result = template.apply(Map.of("count", Component.text("5")));
+
+        assertEquals(NamedTextColor.RED, colorOf(result, "5", null));
+    }
+
+    @Test
+    void valueStyleWinsOverTheSlotStyle() {
+        TextTemplate template = TextTemplate.compile("<red><count>", "count");
+
+        Component result = template.apply(Map.of("count", Component.text("5", NamedTextColor.BLUE)));
+
+        assertEquals(NamedTextColor.BLUE, colorOf(result, "5", null));
+    }
+
+    @Test
+    void missingValuesStayEmpty() {
+        TextTemplate template = TextTemplate.compile("<gray>Top: <name>", "name");
+
+        Component result = template.apply(Map.of());
+
+        assertEquals("Top: ", plainText(result));
+    }
+
+    private static String plainText(Component component) {
+        StringBuilder builder = new StringBuilder();
+        if (component instanceof TextComponent text) builder.append(text.content());
+        component.children().forEach(child -> builder.append(plainText(child)));
+        return builder.toString();
+    }
+
+    /**
+     * @return The color the text with the content is rendered in, including the colors inherited from its parents
+     */
+    private static @Nullable TextColor colorOf(Component component, String content, @Nullable TextColor inherited) {
+        TextColor color = component.color() == null ? inherited : component.color();
+        if (component instanceof TextComponent text && text.content().equals(content)) return color;
+        for (Component child : component.children()) {
+            TextColor found = colorOf(child, content, color);
+            if (found != null) return found;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,76 @@
+package com.maximde.hologramlib.hologram;
+
+import org.bukkit.entity.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ViewerSlotsTest {
+
+    private int nextEntityId = 1;
+
+    @AfterEach
+    void tearDown() {
+        PlayerIndex.clear();
+    }
+
+    private Player player() {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getEntityId()).thenReturn(this.nextEntityId++);
+        PlayerIndex.add(player);
+        return player;
+    }
+
+    @Test
+    void storesIndexedAndUnindexedViewers() {
+        Player player = player();
+        UUID unindexed = UUID.randomUUID();
+        ViewerSlots viewers = new ViewerSlots();
+
+        assertTrue(viewers.add(player.getUniqueId()));
+        assertFalse(viewers.add(player.getUniqueId()));
+        assertTrue(viewers.add(unindexed));
+
+        assertEquals(Set.of(player.getUniqueId(), unindexed), Set.copyOf(viewers.view()));
+        assertTrue(viewers.remove(player.getUniqueId()));
+        assertFalse(viewers.contains(player.getUniqueId()));
+        assertEquals(1, viewers.size());
+    }
+
+    @Test
+    void diffFindsRemovedAndAddedViewers() {
+        Player kept = player();
+        Player removed = player();
+        Player added = player();
+        ViewerSlots viewers = new ViewerSlots();
+        viewers.add(kept.getUniqueId());
+        viewers.add(removed.getUniqueId());
+
+        ViewerSlots.Diff diff = viewers.diff(List.of(kept, added));
+
+        assertEquals(List.of(removed.getUniqueId()), diff.removed());
+        assertEquals(List.of(added), diff.added());
+    }
+
+    @Test
+    void reusedSlotIsNotAViewer() {
+        Player leaving = player();
+        ViewerSlots viewers = new ViewerSlots();
+        viewers.add(leaving.getUniqueId());
+
+        PlayerIndex.remove(leaving);
+        Player joining = player();
+
+        assertEquals(0, PlayerIndex.getSlot(joining.getUniqueId()));
+        assertFalse(viewers.contains(joining.getUniqueId()));
+        assertTrue(viewers.view().isEmpty());
+    }
+}
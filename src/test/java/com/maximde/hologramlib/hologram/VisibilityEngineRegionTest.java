@@ -0,0 +1,180 @@
+package com.maximde.hologramlib.hologram;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class VisibilityEngineRegionTest {
+
+    private final Map<String, ExecutorService> regions = new ConcurrentHashMap<>();
+    private World world;
+    private VisibilityEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        this.world = mock(World.class);
+        when(this.world.getUID()).thenReturn(UUID.randomUUID());
+        this.engine = new VisibilityEngine(true, (task, location) -> regionExecutor(location).execute(task));
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.engine.shutdown();
+        this.regions.values().forEach(ExecutorService::shutdownNow);
+        PlayerIndex.clear();
+    }
+
+    /**
+     * Simulated Folia region, every region section is owned by its own thread
+     */
+    private ExecutorService regionExecutor(Location location) {
+        String name = regionName(location);
+        return this.regions.computeIfAbsent(name, key -> Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, key)));
+    }
+
+    private static String regionName(Location location) {
+        return "region-" + Math.floorDiv(location.getBlockX(), VisibilityEngine.REGION_SECTION_SIZE)
+                + "-" + Math.floorDiv(location.getBlockZ(), VisibilityEngine.REGION_SECTION_SIZE);
+    }
+
+    private Player player(Location location) {
+        Player player = mock(Player.class);
+        when(player.getUniqueId()).thenReturn(UUID.randomUUID());
+        when(player.getEntityId()).thenReturn(1000);
+        PlayerIndex.add(player);
+        this.engine.recordLocation(player, location);
+        return player;
+    }
+
+    @Test
+    void updatesEveryTargetOnTheThreadOwningItsRegion() throws InterruptedException {
+        Location first = new Location(this.world, 10, 64, 10);
+        Location second = new Location(this.world, 1000, 64, -1000);
+        CountDownLatch latch = new CountDownLatch(2);
+        FakeTarget firstTarget = new FakeTarget(first, latch);
+        FakeTarget secondTarget = new FakeTarget(second, latch);
+        Player player = player(first.clone().add(5, 0, 0));
+
+        this.engine.track(firstTarget);
+        this.engine.track(secondTarget);
+        this.engine.tick();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(regionName(first), firstTarget.thread);
+        assertEquals(regionName(second), secondTarget.thread);
+        assertEquals(List.of(player), firstTarget.candidates);
+        assertEquals(List.of(), secondTarget.candidates);
+    }
+
+    @Test
+    void runsDeferredUpdatesOnTheThreadOwningTheRegion() throws InterruptedException {
+        Location first = new Location(this.world, -300, 64, 20);
+        Location second = new Location(this.world, 600, 64, 600);
+        CountDownLatch latch = new CountDownLatch(2);
+        Map<Location, String> threads = new ConcurrentHashMap<>();
+
+        for (Location location : List.of(first, second)) {
+            FakeTarget target = new FakeTarget(location, new CountDownLatch(1));
+            Runnable update = () -> {
+                threads.put(location, Thread.currentThread().getName());
+                latch.countDown();
+            };
+            this.engine.deferUpdate(update, target);
+            this.engine.deferUpdate(update, target);
+        }
+        this.engine.runDeferredUpdates();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(regionName(first), threads.get(first));
+        assertEquals(regionName(second), threads.get(second));
+        assertEquals(2, this.engine.getCoalescedUpdates());
+    }
+
+    private static final class FakeTarget implements VisibilityTarget {
+
+        private final Location location;
+        private final CountDownLatch latch;
+        private volatile String thread;
+        private volatile List<Player> candidates;
+
+        private FakeTarget(Location location, CountDownLatch latch) {
+            this.location = location;
+            this.latch = latch;
+        }
+
+        @Override
+        public void updateAffectedPlayers() {
+            updateAffectedPlayers(List.of());
+        }
+
+        @Override
+        public void updateAffectedPlayers(Collection<? extends Player> candidates) {
+            this.thread = Thread.currentThread().getName();
+            this.candidates = List.copyOf(candidates);
+            this.latch.countDown();
+        }
+
+        @Override
+        public void updateViewer(Player player, Location playerLocation) {
+
+        }
+
+        @Override
+        public boolean isEligible(Player player) {
+            return true;
+        }
+
+        @Override
+        public long getUpdateTaskPeriod() {
+            return 1;
+        }
+
+        @Override
+        public double getMaxPlayerRenderDistanceSquared() {
+            return 48 * 48;
+        }
+
+        @Override
+        public double getDespawnDistanceSquared() {
+            return 48 * 48;
+        }
+
+        @Override
+        public @Nullable Location getLocation() {
+            return this.location;
+        }
+
+        @Override
+        public int getPriority() {
+            return 0;
+        }
+
+        @Override
+        public boolean isCapped() {
+            return true;
+        }
+
+        @Override
+        public boolean isDead() {
+            return false;
+        }
+    }
+}